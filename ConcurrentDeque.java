@@ -0,0 +1,274 @@
+package week2;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe week2.Deque for many producers and consumers. The items are kept in a
+ * java.util.concurrent.ConcurrentLinkedDeque: lock-free linked nodes updated by CAS, where
+ * ABA can not happen because a node is never reused while another thread may still see it
+ * (the garbage collector only reclaims unreachable nodes). The size is a LongAdder updated
+ * after each successful add/remove, so size() takes no lock and is exact when the deque is
+ * quiescent (under concurrent updates it is a snapshot that may lag the latest operations).
+ *
+ * To execute: java week2.ConcurrentDeque [maxThreads]
+ * Runs a stress test, then the scaling benchmark against a synchronized week2.Deque.
+ */
+public class ConcurrentDeque<Item> implements Iterable<Item> {
+
+    /**
+     * Inner representation of the deque
+     */
+    private final ConcurrentLinkedDeque<Item> items = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Number of items, striped to avoid contention on a single counter
+     */
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * Is the deque empty?
+     * @return boolean evaluation
+     */
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * Return the number of items on the deque, without locking.
+     * @return size of the deque
+     */
+    public int size() {
+        return (int) Math.max(0, size.sum());
+    }
+
+    /**
+     * Add the item to the front.
+     * @param item item to be added
+     */
+    public void addFirst(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        items.addFirst(item);
+        size.increment();
+    }
+
+    /**
+     * Add the item to the back.
+     * @param item item to be added
+     */
+    public void addLast(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        items.addLast(item);
+        size.increment();
+    }
+
+    /**
+     * Remove and return the item from the front.
+     * @return removed item
+     */
+    public Item removeFirst() {
+        Item item = pollFirst();
+        if (item == null) {
+            throw new NoSuchElementException();
+        }
+        return item;
+    }
+
+    /**
+     * Remove and return the item from the back.
+     * @return removed item
+     */
+    public Item removeLast() {
+        Item item = pollLast();
+        if (item == null) {
+            throw new NoSuchElementException();
+        }
+        return item;
+    }
+
+    /**
+     * Remove and return the item from the front, if any. Unlike removeFirst it does not
+     * throw, as with several consumers the deque may empty between isEmpty and a remove.
+     * @return removed item or null when empty
+     */
+    public Item pollFirst() {
+        Item item = items.pollFirst();
+        if (item != null) {
+            size.decrement();
+        }
+        return item;
+    }
+
+    /**
+     * Remove and return the item from the back, if any.
+     * @return removed item or null when empty
+     */
+    public Item pollLast() {
+        Item item = items.pollLast();
+        if (item != null) {
+            size.decrement();
+        }
+        return item;
+    }
+
+    /**
+     * Return a weakly consistent iterator over items in order from front to back: it never
+     * throws ConcurrentModificationException and may or may not show concurrent changes.
+     * @return iterator for the deque
+     */
+    public Iterator<Item> iterator() {
+        Iterator<Item> iterator = items.iterator();
+        return new Iterator<Item>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Item next() {
+                return iterator.next();
+            }
+        };
+    }
+
+    /**
+     * Producers add distinct values at random ends, consumers remove from random ends, then
+     * check every value was removed exactly once and the size went back to zero.
+     * @param producers producer threads
+     * @param consumers consumer threads
+     * @param perProducer values added by each producer
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private static void stressTest(int producers, int consumers, int perProducer) throws InterruptedException {
+        ConcurrentDeque<Integer> deque = new ConcurrentDeque<>();
+        int total = producers * perProducer;
+        AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        LongAdder removed = new LongAdder();
+        CountDownLatch done = new CountDownLatch(producers + consumers);
+
+        for (int p = 0; p < producers; p++) {
+            int first = p * perProducer;
+            new Thread(() -> {
+                for (int i = first; i < first + perProducer; i++) {
+                    if ((i & 1) == 0) {
+                        deque.addFirst(i);
+                    } else {
+                        deque.addLast(i);
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        for (int c = 0; c < consumers; c++) {
+            int id = c;
+            new Thread(() -> {
+                int turn = id;
+                while (removed.sum() < total) {
+                    Integer item = (turn++ & 1) == 0 ? deque.pollFirst() : deque.pollLast();
+                    if (item != null) {
+                        seen.incrementAndGet(item);
+                        removed.increment();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        for (int i = 0; i < total; i++) {
+            if (seen.get(i) != 1) {
+                throw new IllegalStateException("value " + i + " removed " + seen.get(i) + " times");
+            }
+        }
+        if (deque.size() != 0 || !deque.isEmpty()) {
+            throw new IllegalStateException("size " + deque.size() + " after draining");
+        }
+        System.out.println("Stress test " + producers + " producers / " + consumers + " consumers: ok");
+    }
+
+    /**
+     * Each thread alternates adds and removes at both ends on a shared deque
+     * @param threads number of threads
+     * @param operations operations per thread
+     * @param concurrent true for ConcurrentDeque, false for a synchronized week2.Deque
+     * @return millions of operations per second
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private static double throughput(int threads, int operations, boolean concurrent) throws InterruptedException {
+        ConcurrentDeque<Integer> concurrentDeque = new ConcurrentDeque<>();
+        Deque<Integer> lockedDeque = new Deque<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        Integer value = 42;
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < operations; i += 2) {
+                    boolean front = (i & 2) == 0;
+                    if (concurrent) {
+                        if (front) {
+                            concurrentDeque.addFirst(value);
+                            concurrentDeque.pollLast();
+                        } else {
+                            concurrentDeque.addLast(value);
+                            concurrentDeque.pollFirst();
+                        }
+                    } else {
+                        synchronized (lockedDeque) {
+                            if (front) {
+                                lockedDeque.addFirst(value);
+                                lockedDeque.removeLast();
+                            } else {
+                                lockedDeque.addLast(value);
+                                lockedDeque.removeFirst();
+                            }
+                        }
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return (double) threads * operations / ((System.nanoTime() - begin) / 1000.0);
+    }
+
+    /**
+     * Stress test and scaling benchmark
+     * @param args arg1 (optional): largest number of threads of the benchmark, default 16
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+
+        stressTest(1, 1, 200000);
+        stressTest(4, 4, 100000);
+        stressTest(8, 2, 50000);
+
+        int operations = 1 << 20;
+        throughput(4, operations, true);
+        throughput(4, operations, false);
+        System.out.println("threads  concurrent(Mops/s)  synchronized(Mops/s)");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            System.out.printf("%7d  %18.2f  %20.2f%n", threads,
+                    throughput(threads, operations, true), throughput(threads, operations, false));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package week1;
+
+/**
+ * Simple cubic 3-D lattice with 6 neighbours.
+ * Site (x, y, z) is numbered (z * n + y) * n + x, layer z = 0 is the top and z = n-1 the bottom.
+ */
+public class CubicLattice implements Lattice {
+
+    /**
+     * Size of the lattice.
+     */
+    private final int n;
+
+    /**
+     * Sites per layer, n * n
+     */
+    private final int layer;
+
+    /**
+     * Create an n-by-n-by-n lattice
+     * @param n lattice size
+     */
+    public CubicLattice(int n) {
+        if (n <= 0 || (long) n * n * n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException();
+        this.n = n;
+        this.layer = n * n;
+    }
+
+    @Override
+    public int sites() {
+        return layer * n;
+    }
+
+    @Override
+    public int maxDegree() {
+        return 6;
+    }
+
+    @Override
+    public int neighbours(int site, int[] out) {
+        int z = site / layer;
+        int inLayer = site - z * layer;
+        int y = inLayer / n;
+        int x = inLayer - y * n;
+        int count = 0;
+        if (z > 0) {
+            out[count++] = site - layer;
+        }
+        if (z < n - 1) {
+            out[count++] = site + layer;
+        }
+        if (y > 0) {
+            out[count++] = site - n;
+        }
+        if (y < n - 1) {
+            out[count++] = site + n;
+        }
+        if (x > 0) {
+            out[count++] = site - 1;
+        }
+        if (x < n - 1) {
+            out[count++] = site + 1;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isTop(int site) {
+        return site < layer;
+    }
+
+    @Override
+    public boolean isBottom(int site) {
+        return site >= layer * (n - 1);
+    }
+}
@@ -7,39 +7,38 @@ import java.util.NoSuchElementException;
  * Author: Vagner Planello
  * Date: 28/jun/2019
  *
+ * Backed by a circular array (power of two capacity, doubled when full and halved when a
+ * quarter full), so adding an item allocates nothing in the steady state and removed slots
+ * are cleared for the garbage collector.
+ *
  * No parameters required to run from command line (Unit Testing only)
  */
 public class Deque<Item> implements Iterable<Item> {
 
     /**
-     * Internal references for first and last elements.
+     * Smallest capacity of the buffer, a power of two.
      */
-    private Node first, last;
+    private static final int MIN_CAPACITY = 8;
 
     /**
-     * Size of the week2.Deque.
+     * Circular buffer holding the items, its length is always a power of two.
      */
-    private int size;
+    private Item[] items;
 
     /**
-     * Definition of an element in the week2.Deque.
+     * Index of the first item in the buffer.
      */
-    private class Node {
-        /**
-         * Information.
-         */
-        Item item;
+    private int head;
 
-        /**
-         * Reference to the previous node.
-         */
-        Node previous;
+    /**
+     * Size of the week2.Deque.
+     */
+    private int size;
 
-        /**
-         * Reference to the next node.
-         */
-        Node next;
-    }
+    /**
+     * Halve the buffer when it gets a quarter full.
+     */
+    private final boolean shrink;
 
     /**
      * First to last Iterator implementation
@@ -47,9 +46,9 @@ public class Deque<Item> implements Iterable<Item> {
     private class DequeFrontToBackIterator implements Iterator<Item> {
 
         /**
-         * Reference to the current element, starting at first.
+         * Position of the next element, counted from the front.
          */
-        private Node current = first;
+        private int current = 0;
 
         /**
          * Checks if the Iterable has a next element.
@@ -57,7 +56,7 @@ public class Deque<Item> implements Iterable<Item> {
          */
         @Override
         public boolean hasNext() {
-            return current != null;
+            return current < size;
         }
 
         /**
@@ -71,9 +70,7 @@ public class Deque<Item> implements Iterable<Item> {
                 throw new NoSuchElementException();
             }
 
-            Item item = current.item;
-            current = current.previous;
-            return item;
+            return items[(head + current++) & (items.length - 1)];
         }
 
         /**
@@ -90,9 +87,20 @@ public class Deque<Item> implements Iterable<Item> {
      */
 
     public Deque() {
-        first = null;
-        last = null;
+        this(true);
+    }
+
+    /**
+     * Construct an empty deque.
+     * @param shrink true to halve the buffer whenever it gets a quarter full, false to keep
+     *               the largest capacity reached (no reallocation on queues that breathe)
+     */
+    @SuppressWarnings("unchecked")
+    public Deque(boolean shrink) {
+        items = (Item[]) new Object[MIN_CAPACITY];
+        head = 0;
         size = 0;
+        this.shrink = shrink;
     }
 
     /**
@@ -122,16 +130,11 @@ public class Deque<Item> implements Iterable<Item> {
             throw new IllegalArgumentException();
         }
 
-       Node oldFirst = first;
-       first = new Node();
-       first.item = item;
-       first.next = null;
-       first.previous = oldFirst;
-       if (isEmpty())
-            last = first;
-       else
-           oldFirst.next = first;
-
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
         size++;
     }
 
@@ -145,16 +148,10 @@ public class Deque<Item> implements Iterable<Item> {
             throw new IllegalArgumentException();
         }
 
-        Node oldlast = last;
-        last = new Node();
-        last.item = item;
-        last.next = oldlast;
-        last.previous = null;
-        if (isEmpty())
-            first = last;
-        else
-            oldlast.previous = last;
-
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        items[(head + size) & (items.length - 1)] = item;
         size++;
     }
 
@@ -168,13 +165,11 @@ public class Deque<Item> implements Iterable<Item> {
             throw new NoSuchElementException();
         }
 
-        Item item = first.item;
-        first = first.previous;
-        if (first != null)
-            first.next = null;
+        Item item = items[head];
+        items[head] = null;
+        head = (head + 1) & (items.length - 1);
         size--;
-        if (isEmpty())
-            last = null;
+        shrinkIfSparse();
 
         return item;
     }
@@ -189,14 +184,11 @@ public class Deque<Item> implements Iterable<Item> {
             throw new NoSuchElementException();
         }
 
-        Item item  = last.item;
-        last = last.next;
-        if (last != null)
-            last.previous = null;
+        int tail = (head + size - 1) & (items.length - 1);
+        Item item = items[tail];
+        items[tail] = null;
         size--;
-        if (isEmpty())
-            first = null;
-
+        shrinkIfSparse();
 
         return item;
     }
@@ -209,6 +201,30 @@ public class Deque<Item> implements Iterable<Item> {
         return new DequeFrontToBackIterator();
     }
 
+    /**
+     * Halve the buffer when shrinking is enabled and it is a quarter full.
+     */
+    private void shrinkIfSparse() {
+        if (shrink && items.length > MIN_CAPACITY && size <= items.length / 4) {
+            resize(items.length / 2);
+        }
+    }
+
+    /**
+     * Move the items to a new buffer, first item at index 0.
+     * @param capacity new capacity, a power of two not smaller than size
+     */
+    private void resize(int capacity) {
+        @SuppressWarnings("unchecked")
+        Item[] resized = (Item[]) new Object[capacity];
+        int mask = items.length - 1;
+        for (int i = 0; i < size; i++) {
+            resized[i] = items[(head + i) & mask];
+        }
+        items = resized;
+        head = 0;
+    }
+
     /**
      * Unit testing (required)
      * @param args not required
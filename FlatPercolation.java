@@ -0,0 +1,512 @@
+package week1;
+
+import java.util.Arrays;
+
+/**
+ * Percolation backend built on flat primitive arrays: the union-find (weighted, with path
+ * halving) is inlined over a single int[] and the open state is a packed bitset.
+ * Instead of virtual top/bottom sites each root carries connected-to-top/bottom flags, so
+ * isFull() has no backwash and percolates() is O(1).
+ * A root stores ~(size << 2 | flags), a negative number, in place of its parent, so a union
+ * reads one array instead of parent/size/flags arrays: with random opens on large grids the
+ * time goes to cache misses, and this saves two of them per union. Sizes must fit in 29
+ * bits, so n is at most 23170 (use week1.MappedPercolation beyond).
+ * Coordinates are validated once on the public entry points, internal paths work on
+ * 0-based site ids (row-major) and never re-validate.
+ *
+ * Same API as week1.Percolation, to execute from command line use week1.PercolationStats instead.
+ */
+public class FlatPercolation implements PercolationSystem {
+
+    /**
+     * Root flag: component is connected to the top row
+     */
+    private static final int CONNECTED_TOP = 1;
+
+    /**
+     * Root flag: component is connected to the bottom row
+     */
+    private static final int CONNECTED_BOTTOM = 2;
+
+    /**
+     * Size of the grid.
+     */
+    private final int n;
+
+    /**
+     * Id of the first site of the bottom row
+     */
+    private final int bottomRow;
+
+    /**
+     * Largest grid size: n*n sizes shifted by the 2 flag bits must stay positive
+     */
+    private static final int MAX_N = 23170;
+
+    /**
+     * Root entry of a blocked (or lone) site: size 1, no flags
+     */
+    private static final int SINGLETON = ~(1 << 2);
+
+    /**
+     * Union-find over sites 0..n*n-1: parent link (>= 0) for non-roots, and
+     * ~(size << 2 | CONNECTED_TOP/CONNECTED_BOTTOM flags) (< 0) for roots
+     */
+    private final int[] parent;
+
+    /**
+     * Open sites bitset, bit (site & 63) of word (site >>> 6)
+     */
+    private final long[] open;
+
+    /**
+     * count of open sites
+     */
+    private int openSites = 0;
+
+    /**
+     * set once a component is connected to both top and bottom
+     */
+    private boolean percolates = false;
+
+    /**
+     * A site of the first cluster that spanned top to bottom, -1 before percolation
+     */
+    private int spanningSite = -1;
+
+    /**
+     * number of clusters of open sites
+     */
+    private int clusters = 0;
+
+    /**
+     * size of the largest cluster of open sites
+     */
+    private int largestCluster = 0;
+
+    /**
+     * clustersBySize[s] = number of clusters of size s, null unless tracking was enabled
+     */
+    private int[] clustersBySize;
+
+    /**
+     * Receives the open events, null when nobody listens (no cost besides a null check)
+     */
+    private PercolationListener listener;
+
+    /**
+     * Members of each cluster as circular linked lists (next site of the same cluster),
+     * only allocated when a listener is registered, to report the sites that become full
+     */
+    private int[] next;
+
+    /**
+     * Create n-by-n grid, with all sites blocked
+     * @param n grid size
+     */
+    public FlatPercolation(int n) {
+        if (n <= 0 || n > MAX_N)
+            throw new IllegalArgumentException();
+        this.n = n;
+        this.bottomRow = (n - 1) * n;
+        parent = new int[n * n];
+        open = new long[(n * n + 63) >>> 6];
+        reset();
+    }
+
+    /**
+     * Block every site again, so the same grid can be reused by the next trial without
+     * reallocating its arrays
+     */
+    public void reset() {
+        Arrays.fill(parent, SINGLETON);
+        Arrays.fill(open, 0L);
+        openSites = 0;
+        percolates = false;
+        spanningSite = -1;
+        clusters = 0;
+        largestCluster = 0;
+        if (clustersBySize != null) {
+            Arrays.fill(clustersBySize, 0);
+        }
+        if (next != null) {
+            for (int i = 0; i < next.length; i++) {
+                next[i] = i;
+            }
+        }
+    }
+
+    /**
+     * Register the listener notified when sites become full, clusters merge and the system
+     * first percolates. Registering on a grid that already has open sites builds the cluster
+     * member lists in O(n^2), later events are O(1) except siteFull, which is O(sites that
+     * became full).
+     * @param listener listener to notify, null to stop notifying
+     */
+    public void setListener(PercolationListener listener) {
+        this.listener = listener;
+        if (listener == null) {
+            next = null;
+            return;
+        }
+        if (next == null) {
+            next = new int[parent.length];
+            for (int i = 0; i < next.length; i++) {
+                next[i] = i;
+            }
+            for (int site = 0; site < next.length; site++) {
+                int root = find(site);
+                if (root != site) {
+                    next[site] = next[root];
+                    next[root] = site;
+                }
+            }
+        }
+    }
+
+    /**
+     * Keep the number of clusters of each size up to date on every open, for
+     * clusterSizeDistribution(). Enabling builds the counts from the current grid in O(n^2)
+     * and costs an int per site, later updates are O(1) per union.
+     * @param enabled true to track the size distribution, false to drop it
+     */
+    public void setClusterSizeTracking(boolean enabled) {
+        if (!enabled) {
+            clustersBySize = null;
+            return;
+        }
+        if (clustersBySize == null) {
+            clustersBySize = new int[parent.length + 1];
+            for (int site = 0; site < parent.length; site++) {
+                if (isOpenSite(site) && parent[site] < 0) {
+                    clustersBySize[sizeOf(site)]++;
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * @return number of clusters of open sites
+     */
+    public int numberOfClusters() {
+        return clusters;
+    }
+
+    /**
+     *
+     * @return number of sites of the largest cluster, 0 when no site is open
+     */
+    public int largestClusterSize() {
+        return largestCluster;
+    }
+
+    /**
+     *
+     * @return number of sites of the first cluster that connected top and bottom, 0 if the system does not percolate
+     */
+    public int spanningClusterSize() {
+        if (spanningSite < 0) {
+            return 0;
+        }
+        return sizeOf(find(spanningSite));
+    }
+
+    /**
+     * Cluster size distribution, only available after setClusterSizeTracking(true)
+     * @return array where entry s is the number of clusters of s sites, up to the largest size
+     */
+    public int[] clusterSizeDistribution() {
+        if (clustersBySize == null)
+            throw new IllegalStateException("cluster size tracking is not enabled");
+        return Arrays.copyOf(clustersBySize, largestCluster + 1);
+    }
+
+    /**
+     * Open site (row, col) if it is not open already
+     * @param row x-coordinate of the site to open
+     * @param col y-coordinate of the site to open
+     */
+    @Override
+    public void open(int row, int col) {
+        validate(row, col);
+        openSite((row - 1) * n + (col - 1), col - 1);
+    }
+
+    /**
+     * Open a batch of sites. All coordinates are validated in one pass before any site is
+     * opened (so an invalid entry leaves the grid untouched), then the sites are opened
+     * without further checks.
+     * @param rows x-coordinates of the sites to open
+     * @param cols y-coordinates of the sites to open, same length as rows
+     * @return does the system percolate after the batch
+     */
+    @Override
+    public boolean openAll(int[] rows, int[] cols) {
+        if (rows.length != cols.length)
+            throw new IllegalArgumentException();
+        for (int i = 0; i < rows.length; i++) {
+            validate(rows[i], cols[i]);
+        }
+        for (int i = 0; i < rows.length; i++) {
+            openSite((rows[i] - 1) * n + (cols[i] - 1), cols[i] - 1);
+        }
+        return percolates;
+    }
+
+    /**
+     * Open a batch of sites given by their 0-based row-major ids ((row-1)*n + (col-1)).
+     * All ids are range checked in one pass before any site is opened.
+     * @param sites ids of the sites to open
+     * @return does the system percolate after the batch
+     */
+    public boolean openAll(int[] sites) {
+        int total = n * n;
+        for (int site : sites) {
+            if (site < 0 || site >= total)
+                throw new IllegalArgumentException();
+        }
+        for (int site : sites) {
+            openSite(site, site % n);
+        }
+        return percolates;
+    }
+
+    /**
+     * Is site (row, col) open?
+     * @param row x-coordinate of the site to check
+     * @param col y-coordinate of the site to check
+     * @return boolean status of the site (open == true, closed ==false)
+     */
+    @Override
+    public boolean isOpen(int row, int col) {
+        validate(row, col);
+        return isOpenSite((row - 1) * n + (col - 1));
+    }
+
+    /**
+     * Is site (row, col) full?
+     * @param row x-coordinate of the site to check
+     * @param col y-coordinate of the site to check
+     * @return boolean status of the site (full == true, not full ==false)
+     */
+    @Override
+    public boolean isFull(int row, int col) {
+        validate(row, col);
+        int site = (row - 1) * n + (col - 1);
+        return isOpenSite(site) && (flagsOf(find(site)) & CONNECTED_TOP) != 0;
+    }
+
+    /**
+     *
+     * @return number of open sites
+     */
+    @Override
+    public int numberOfOpenSites() {
+        return openSites;
+    }
+
+    /**
+     * does the system percolate
+     * @return boolean answer if system percolates
+     */
+    @Override
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**
+     * Open a site given its 0-based id, no validation
+     * @param site row-major site id
+     * @param col 0-based column of the site (site % n, passed in to save the division)
+     */
+    private void openSite(int site, int col) {
+        if (isOpenSite(site)) {
+            return;
+        }
+        open[site >>> 6] |= 1L << site;
+        openSites++;
+        clusters++;
+        if (largestCluster == 0) {
+            largestCluster = 1;
+        }
+        if (clustersBySize != null) {
+            clustersBySize[1]++;
+        }
+
+        if (site < n) {
+            parent[site] = ~(~parent[site] | CONNECTED_TOP);
+            if (listener != null) {
+                listener.siteFull(1, site + 1);
+            }
+        }
+        if (site >= bottomRow) {
+            parent[site] = ~(~parent[site] | CONNECTED_BOTTOM);
+            if (flagsOf(site) == (CONNECTED_TOP | CONNECTED_BOTTOM)) {
+                markPercolated(site);
+            }
+        }
+        if (site >= n && isOpenSite(site - n)) {
+            union(site, site - n);
+        }
+        if (site < bottomRow && isOpenSite(site + n)) {
+            union(site, site + n);
+        }
+        if (col > 0 && isOpenSite(site - 1)) {
+            union(site, site - 1);
+        }
+        if (col < n - 1 && isOpenSite(site + 1)) {
+            union(site, site + 1);
+        }
+    }
+
+    /**
+     * Check the open bit of a site, no validation
+     * @param site row-major site id
+     * @return boolean status of the site
+     */
+    private boolean isOpenSite(int site) {
+        return (open[site >>> 6] & (1L << site)) != 0;
+    }
+
+    /**
+     * Root of the component of a site, halving the path on the way
+     * @param site site id
+     * @return root id
+     */
+    private int find(int site) {
+        int up = parent[site];
+        while (up >= 0) {
+            int grandParent = parent[up];
+            if (grandParent < 0) {
+                return up;
+            }
+            parent[site] = grandParent;
+            site = grandParent;
+            up = parent[site];
+        }
+        return site;
+    }
+
+    /**
+     * Size of a component
+     * @param root root id
+     * @return number of sites of the component
+     */
+    private int sizeOf(int root) {
+        return ~parent[root] >>> 2;
+    }
+
+    /**
+     * CONNECTED_TOP/CONNECTED_BOTTOM flags of a component
+     * @param root root id
+     * @return flags
+     */
+    private int flagsOf(int root) {
+        return ~parent[root] & (CONNECTED_TOP | CONNECTED_BOTTOM);
+    }
+
+    /**
+     * Merge the components of two sites, smaller tree under the larger one, and keep the
+     * top/bottom flags of both on the new root (percolates as soon as a root has both)
+     * @param p site id
+     * @param q site id
+     */
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return;
+        }
+        int entryP = ~parent[rootP];
+        int entryQ = ~parent[rootQ];
+        int flags = (entryP | entryQ) & (CONNECTED_TOP | CONNECTED_BOTTOM);
+        int sizeP = entryP >>> 2;
+        int sizeQ = entryQ >>> 2;
+        int merged = sizeP + sizeQ;
+        if (listener != null) {
+            notifyMerge(rootP, rootQ);
+        }
+        if (clustersBySize != null) {
+            clustersBySize[sizeP]--;
+            clustersBySize[sizeQ]--;
+            clustersBySize[merged]++;
+        }
+        int root;
+        if (sizeP < sizeQ) {
+            parent[rootP] = rootQ;
+            root = rootQ;
+        } else {
+            parent[rootQ] = rootP;
+            root = rootP;
+        }
+        parent[root] = ~(merged << 2 | flags);
+        clusters--;
+        if (merged > largestCluster) {
+            largestCluster = merged;
+        }
+        if (listener != null) {
+            listener.clustersMerged(merged);
+        }
+        if (flags == (CONNECTED_TOP | CONNECTED_BOTTOM)) {
+            markPercolated(root);
+        }
+    }
+
+    /**
+     * Before two clusters merge: report the sites of the one that is about to become full
+     * and join the member lists
+     * @param rootP root of a cluster
+     * @param rootQ root of the other cluster
+     */
+    private void notifyMerge(int rootP, int rootQ) {
+        boolean fullP = (flagsOf(rootP) & CONNECTED_TOP) != 0;
+        boolean fullQ = (flagsOf(rootQ) & CONNECTED_TOP) != 0;
+        if (fullP && !fullQ) {
+            notifyFull(rootQ);
+        } else if (fullQ && !fullP) {
+            notifyFull(rootP);
+        }
+        int nextP = next[rootP];
+        next[rootP] = next[rootQ];
+        next[rootQ] = nextP;
+    }
+
+    /**
+     * Report every site of a cluster as full
+     * @param root root of the cluster
+     */
+    private void notifyFull(int root) {
+        int site = root;
+        do {
+            listener.siteFull(site / n + 1, site % n + 1);
+            site = next[site];
+        } while (site != root);
+    }
+
+    /**
+     * Set percolates, remembering the spanning cluster and notifying the listener the first time
+     * @param site a site of the spanning cluster
+     */
+    private void markPercolated(int site) {
+        if (!percolates) {
+            percolates = true;
+            spanningSite = site;
+            if (listener != null) {
+                listener.percolated(openSites);
+            }
+        }
+    }
+
+    /**
+     * Verify that coordinates are valid
+     * @param row x-coordinate
+     * @param col y-coordinate
+     */
+    private void validate(int row, int col) {
+        if (row < 1 || row > this.n)
+            throw new IllegalArgumentException();
+        if (col < 1 || col > this.n)
+            throw new IllegalArgumentException();
+    }
+}
@@ -0,0 +1,65 @@
+package week1;
+
+/**
+ * Hexagonal (honeycomb) lattice with 3 neighbours, drawn on a square grid as a brick wall:
+ * left and right always, plus down when row + col is even and up when it is odd.
+ * Sites are numbered row by row, row 0 is the top and row n-1 the bottom.
+ */
+public class HexagonalLattice implements Lattice {
+
+    /**
+     * Size of the lattice.
+     */
+    private final int n;
+
+    /**
+     * Create an n-by-n lattice
+     * @param n lattice size
+     */
+    public HexagonalLattice(int n) {
+        if (n <= 0 || (long) n * n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException();
+        this.n = n;
+    }
+
+    @Override
+    public int sites() {
+        return n * n;
+    }
+
+    @Override
+    public int maxDegree() {
+        return 3;
+    }
+
+    @Override
+    public int neighbours(int site, int[] out) {
+        int row = site / n;
+        int col = site - row * n;
+        int count = 0;
+        if (col > 0) {
+            out[count++] = site - 1;
+        }
+        if (col < n - 1) {
+            out[count++] = site + 1;
+        }
+        if (((row + col) & 1) == 0) {
+            if (row < n - 1) {
+                out[count++] = site + n;
+            }
+        } else if (row > 0) {
+            out[count++] = site - n;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isTop(int site) {
+        return site < n;
+    }
+
+    @Override
+    public boolean isBottom(int site) {
+        return site >= (n - 1) * n;
+    }
+}
@@ -0,0 +1,248 @@
+package week2;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * week2.Deque specialized for int values: the items live in an int[] circular buffer, so
+ * there is no boxing and, once the buffer reached its working size, adding and removing
+ * never touch the heap (create it with shrink == false to also avoid the halving).
+ * Iterate with forEach(IntConsumer) or the primitive iterator, from front to back.
+ *
+ * No parameters required to run from command line (Unit Testing only)
+ */
+public class IntDeque {
+
+    /**
+     * Smallest capacity of the buffer, a power of two.
+     */
+    private static final int MIN_CAPACITY = 8;
+
+    /**
+     * Circular buffer holding the items, its length is always a power of two.
+     */
+    private int[] items;
+
+    /**
+     * Index of the first item in the buffer.
+     */
+    private int head;
+
+    /**
+     * Size of the deque.
+     */
+    private int size;
+
+    /**
+     * Halve the buffer when it gets a quarter full.
+     */
+    private final boolean shrink;
+
+    /**
+     * First to last Iterator implementation
+     */
+    private class IntDequeFrontToBackIterator implements PrimitiveIterator.OfInt {
+
+        /**
+         * Position of the next element, counted from the front.
+         */
+        private int current = 0;
+
+        /**
+         * Checks if the Iterable has a next element.
+         * @return boolean evaluation
+         */
+        @Override
+        public boolean hasNext() {
+            return current < size;
+        }
+
+        /**
+         * Next element of the iterable
+         * @return element
+         */
+        @Override
+        public int nextInt() {
+
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return items[(head + current++) & (items.length - 1)];
+        }
+    }
+
+    /**
+     * Construct an empty deque.
+     */
+    public IntDeque() {
+        this(true);
+    }
+
+    /**
+     * Construct an empty deque.
+     * @param shrink true to halve the buffer whenever it gets a quarter full, false to keep
+     *               the largest capacity reached (no allocation after warm up)
+     */
+    public IntDeque(boolean shrink) {
+        items = new int[MIN_CAPACITY];
+        this.shrink = shrink;
+    }
+
+    /**
+     * Is the deque empty?
+     * @return boolean evaluation
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return the number of items on the deque.
+     * @return size of the deque
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add the item to the front.
+     * @param item item to be added
+     */
+    public void addFirst(int item) {
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+        size++;
+    }
+
+    /**
+     * Add the item to the back.
+     * @param item item to be added
+     */
+    public void addLast(int item) {
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        items[(head + size) & (items.length - 1)] = item;
+        size++;
+    }
+
+    /**
+     * Remove and return the item from the front.
+     * @return removed item
+     */
+    public int removeFirst() {
+
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+
+        int item = items[head];
+        head = (head + 1) & (items.length - 1);
+        size--;
+        shrinkIfSparse();
+
+        return item;
+    }
+
+    /**
+     * Remove and return the item from the back.
+     * @return removed item
+     */
+    public int removeLast() {
+
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+
+        int item = items[(head + size - 1) & (items.length - 1)];
+        size--;
+        shrinkIfSparse();
+
+        return item;
+    }
+
+    /**
+     * Apply an action to every item, from front to back, without boxing.
+     * @param action action to apply
+     */
+    public void forEach(IntConsumer action) {
+        int mask = items.length - 1;
+        for (int i = 0; i < size; i++) {
+            action.accept(items[(head + i) & mask]);
+        }
+    }
+
+    /**
+     * Return an iterator over items in order from front to back.
+     * @return primitive iterator for the deque
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new IntDequeFrontToBackIterator();
+    }
+
+    /**
+     * Halve the buffer when shrinking is enabled and it is a quarter full.
+     */
+    private void shrinkIfSparse() {
+        if (shrink && items.length > MIN_CAPACITY && size <= items.length / 4) {
+            resize(items.length / 2);
+        }
+    }
+
+    /**
+     * Move the items to a new buffer, first item at index 0.
+     * @param capacity new capacity, a power of two not smaller than size
+     */
+    private void resize(int capacity) {
+        int[] resized = new int[capacity];
+        int mask = items.length - 1;
+        for (int i = 0; i < size; i++) {
+            resized[i] = items[(head + i) & mask];
+        }
+        items = resized;
+        head = 0;
+    }
+
+    /**
+     * Unit testing
+     * @param args not required
+     */
+    public static void main(String[] args) {
+
+        IntDeque deque = new IntDeque();
+
+        System.out.println("Queue Behaviour");
+        deque.addLast(1);
+        deque.addLast(2);
+        deque.addLast(3);
+        System.out.println(deque.removeFirst());
+        System.out.println(deque.removeFirst());
+        System.out.println(deque.removeFirst());
+
+        System.out.println("Stack Behaviour");
+        deque.addFirst(1);
+        deque.addFirst(2);
+        deque.addFirst(3);
+        System.out.println(deque.removeFirst());
+        System.out.println(deque.removeFirst());
+        System.out.println(deque.removeFirst());
+
+        System.out.println("Test Iterator");
+        for (int i = 0; i < 20; i++) {
+            deque.addLast(i);
+        }
+        deque.forEach(item -> System.out.print(item + " "));
+        System.out.println();
+        PrimitiveIterator.OfInt iterator = deque.iterator();
+        while (iterator.hasNext()) {
+            System.out.print(iterator.nextInt() + " ");
+        }
+        System.out.println();
+        System.out.println("Size " + deque.size());
+    }
+}
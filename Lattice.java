@@ -0,0 +1,44 @@
+package week1;
+
+/**
+ * Neighbour generation of a percolation lattice, used by week1.LatticePercolation.
+ * Sites are numbered 0..sites()-1, the first layer is the top and the last layer the bottom.
+ * Implementations compute neighbours arithmetically and write them into a caller buffer, so
+ * the open loop stays allocation-free.
+ */
+public interface Lattice {
+
+    /**
+     *
+     * @return number of sites of the lattice
+     */
+    int sites();
+
+    /**
+     *
+     * @return largest number of neighbours of a site, size of the buffer given to neighbours()
+     */
+    int maxDegree();
+
+    /**
+     * Write the neighbours of a site, no validation
+     * @param site site id
+     * @param out buffer of at least maxDegree() entries
+     * @return number of neighbours written
+     */
+    int neighbours(int site, int[] out);
+
+    /**
+     * Is the site on the top layer?
+     * @param site site id
+     * @return boolean evaluation
+     */
+    boolean isTop(int site);
+
+    /**
+     * Is the site on the bottom layer?
+     * @param site site id
+     * @return boolean evaluation
+     */
+    boolean isBottom(int site);
+}
@@ -0,0 +1,343 @@
+package week1;
+
+import common.SplitMix64;
+
+/**
+ * Site and bond percolation over any week1.Lattice (square, Moore, triangular, hexagonal,
+ * cubic...). The union-find is inlined over an int[] parent array and a byte[] state array:
+ * bit 7 open, bit 6 connected to top, bit 5 connected to bottom, bits 0-4 union rank (ranks
+ * never exceed 31). With 5 bytes per site a 512^3 cubic lattice (1.3x10^8 sites) needs about
+ * 670 MB. Neighbours are written into a buffer owned by the instance, so open() does not
+ * allocate.
+ *
+ * Site percolation: open(site) opens a site and connects it to its open neighbours.
+ * Bond percolation: openBond(p, q) opens both end sites and connects only p and q.
+ *
+ * To execute: java week1.LatticePercolation lattice n [site|bond [seed]]
+ * Where lattice is square, moore, triangular, hexagonal or cubic. Runs one trial and prints
+ * the fraction of open sites (or bonds) at which the lattice first percolates.
+ */
+public class LatticePercolation {
+
+    /**
+     * State bit: site is open
+     */
+    private static final int OPEN = 0x80;
+
+    /**
+     * State bit: component is connected to the top layer, only meaningful for roots
+     */
+    private static final int CONNECTED_TOP = 0x40;
+
+    /**
+     * State bit: component is connected to the bottom layer, only meaningful for roots
+     */
+    private static final int CONNECTED_BOTTOM = 0x20;
+
+    /**
+     * State bits holding the union rank, only meaningful for roots
+     */
+    private static final int RANK = 0x1f;
+
+    /**
+     * Neighbour generation
+     */
+    private final Lattice lattice;
+
+    /**
+     * Parent links of the union-find
+     */
+    private final int[] parent;
+
+    /**
+     * State bits of each site
+     */
+    private final byte[] state;
+
+    /**
+     * Neighbour buffer reused by every open
+     */
+    private final int[] neighbours;
+
+    /**
+     * count of open sites
+     */
+    private int openSites = 0;
+
+    /**
+     * set once a component is connected to both top and bottom
+     */
+    private boolean percolates = false;
+
+    /**
+     * Create a lattice with all sites blocked
+     * @param lattice neighbour generation
+     */
+    public LatticePercolation(Lattice lattice) {
+        this.lattice = lattice;
+        int sites = lattice.sites();
+        parent = new int[sites];
+        state = new byte[sites];
+        neighbours = new int[lattice.maxDegree()];
+        for (int i = 0; i < sites; i++) {
+            parent[i] = i;
+        }
+    }
+
+    /**
+     * Open a site if it is not open already and connect it to its open neighbours
+     * @param site site id
+     */
+    public void open(int site) {
+        validate(site);
+        if (!openSite(site)) {
+            return;
+        }
+        int count = lattice.neighbours(site, neighbours);
+        for (int i = 0; i < count; i++) {
+            int neighbour = neighbours[i];
+            if ((state[neighbour] & OPEN) != 0) {
+                union(site, neighbour);
+            }
+        }
+        checkPercolation(site);
+    }
+
+    /**
+     * Open the bond between two neighbour sites, opening both sites if needed
+     * @param p site id
+     * @param q site id, neighbour of p
+     */
+    public void openBond(int p, int q) {
+        validate(p);
+        validate(q);
+        int count = lattice.neighbours(p, neighbours);
+        boolean adjacent = false;
+        for (int i = 0; i < count; i++) {
+            adjacent |= neighbours[i] == q;
+        }
+        if (!adjacent)
+            throw new IllegalArgumentException();
+
+        openSite(p);
+        openSite(q);
+        union(p, q);
+        checkPercolation(p);
+    }
+
+    /**
+     * Is the site open?
+     * @param site site id
+     * @return boolean evaluation
+     */
+    public boolean isOpen(int site) {
+        validate(site);
+        return (state[site] & OPEN) != 0;
+    }
+
+    /**
+     * Is the site full (open and connected to the top layer)?
+     * @param site site id
+     * @return boolean evaluation
+     */
+    public boolean isFull(int site) {
+        validate(site);
+        return (state[site] & OPEN) != 0 && (state[find(site)] & CONNECTED_TOP) != 0;
+    }
+
+    /**
+     *
+     * @return number of open sites
+     */
+    public int numberOfOpenSites() {
+        return openSites;
+    }
+
+    /**
+     * does the system percolate
+     * @return boolean answer if system percolates
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**
+     *
+     * @return the lattice of this system
+     */
+    public Lattice lattice() {
+        return lattice;
+    }
+
+    /**
+     * Mark a site open with its boundary flags, without connecting it
+     * @param site site id
+     * @return true if the site was blocked
+     */
+    private boolean openSite(int site) {
+        if ((state[site] & OPEN) != 0) {
+            return false;
+        }
+        int flags = OPEN;
+        if (lattice.isTop(site)) {
+            flags |= CONNECTED_TOP;
+        }
+        if (lattice.isBottom(site)) {
+            flags |= CONNECTED_BOTTOM;
+        }
+        state[site] = (byte) flags;
+        openSites++;
+        return true;
+    }
+
+    /**
+     * Set percolates if the component of the site spans top to bottom
+     * @param site site id
+     */
+    private void checkPercolation(int site) {
+        if ((state[find(site)] & (CONNECTED_TOP | CONNECTED_BOTTOM)) == (CONNECTED_TOP | CONNECTED_BOTTOM)) {
+            percolates = true;
+        }
+    }
+
+    /**
+     * Root of the component of a site, halving the path on the way
+     * @param site site id
+     * @return root id
+     */
+    private int find(int site) {
+        while (site != parent[site]) {
+            parent[site] = parent[parent[site]];
+            site = parent[site];
+        }
+        return site;
+    }
+
+    /**
+     * Merge the components of two sites by rank, keeping the top/bottom flags of both on the new root
+     * @param p site id
+     * @param q site id
+     */
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return;
+        }
+        int stateP = state[rootP];
+        int stateQ = state[rootQ];
+        int flags = (stateP | stateQ) & (CONNECTED_TOP | CONNECTED_BOTTOM);
+        int rankP = stateP & RANK;
+        int rankQ = stateQ & RANK;
+        if (rankP < rankQ) {
+            parent[rootP] = rootQ;
+            state[rootQ] = (byte) (stateQ | flags);
+        } else {
+            parent[rootQ] = rootP;
+            if (rankP == rankQ) {
+                rankP++;
+            }
+            state[rootP] = (byte) ((stateP & ~RANK) | flags | rankP);
+        }
+    }
+
+    /**
+     * Verify that a site id is valid
+     * @param site site id
+     */
+    private void validate(int site) {
+        if (site < 0 || site >= parent.length)
+            throw new IllegalArgumentException();
+    }
+
+    /**
+     * Create a lattice from its command line name
+     * @param name square, moore, triangular, hexagonal or cubic
+     * @param n lattice size
+     * @return the lattice
+     */
+    private static Lattice lattice(String name, int n) {
+        switch (name) {
+            case "square":
+                return new SquareLattice(n);
+            case "moore":
+                return new MooreLattice(n);
+            case "triangular":
+                return new TriangularLattice(n);
+            case "hexagonal":
+                return new HexagonalLattice(n);
+            case "cubic":
+                return new CubicLattice(n);
+            default:
+                throw new IllegalArgumentException("unknown lattice " + name);
+        }
+    }
+
+    /**
+     * Run one trial and print the threshold
+     * @param args arg1: lattice name, arg2: size, arg3 (optional): site or bond, arg4 (optional): seed
+     */
+    public static void main(String[] args) {
+
+        Lattice lattice = lattice(args[0], Integer.parseInt(args[1]));
+        boolean bond = args.length > 2 && "bond".equals(args[2]);
+        SplitMix64 random = args.length > 3 ? new SplitMix64(Long.parseLong(args[3]))
+                : SplitMix64.current().split();
+
+        LatticePercolation percolation = new LatticePercolation(lattice);
+        int sites = lattice.sites();
+
+        if (!bond) {
+            int[] order = new int[sites];
+            for (int site = 0; site < sites; site++) {
+                order[site] = site;
+            }
+            for (int i = 0; !percolation.percolates(); i++) {
+                int j = random.nextInt(i, sites);
+                int site = order[j];
+                order[j] = order[i];
+                order[i] = site;
+                percolation.open(site);
+            }
+            System.out.println("site threshold = " + (double) percolation.numberOfOpenSites() / sites);
+            return;
+        }
+
+        // bonds are (site, neighbour) pairs with neighbour > site, packed in a long
+        int[] buffer = new int[lattice.maxDegree()];
+        int bonds = 0;
+        for (int site = 0; site < sites; site++) {
+            int count = lattice.neighbours(site, buffer);
+            for (int i = 0; i < count; i++) {
+                if (buffer[i] > site) {
+                    bonds++;
+                }
+            }
+        }
+        if (bonds == 0) {
+            // e.g. a single site: there is no bond to open, so no bond threshold either
+            System.out.println("bond threshold undefined, the lattice has no bonds");
+            return;
+        }
+        long[] order = new long[bonds];
+        int next = 0;
+        for (int site = 0; site < sites; site++) {
+            int count = lattice.neighbours(site, buffer);
+            for (int i = 0; i < count; i++) {
+                if (buffer[i] > site) {
+                    order[next++] = ((long) site << 32) | buffer[i];
+                }
+            }
+        }
+        int opened = 0;
+        while (!percolation.percolates()) {
+            int j = random.nextInt(opened, bonds);
+            long pair = order[j];
+            order[j] = order[opened];
+            order[opened] = pair;
+            opened++;
+            percolation.openBond((int) (pair >>> 32), (int) pair);
+        }
+        System.out.println("bond threshold = " + (double) opened / bonds);
+    }
+}
@@ -0,0 +1,414 @@
+package week1;
+
+import common.SplitMix64;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Off-heap percolation backend: the union-find lives in memory-mapped temp file, so grids
+ * far beyond the heap size (n up to 46340, i.e. n*n sites within an int) run without GC.
+ *
+ * Per site the file holds an int parent link and one state byte:
+ * bit 7 open, bit 6 connected to top, bit 5 connected to bottom, bits 0-4 union rank
+ * (ranks never exceed 31 for 2^31 sites). Parents are stored as parent + 1 with 0 meaning
+ * "root of itself", so a freshly created (sparse, zero filled) file is an empty grid and
+ * construction does not touch every page. Top/bottom flags are kept on roots, as in
+ * week1.FlatPercolation, so there is no backwash.
+ *
+ * reset() empties the grid for another trial in the same file and mappings; closing the grid
+ * truncates and deletes the file.
+ * To execute: java week1.MappedPercolation n [trials [seed [threads]]] (prints the threshold stats)
+ */
+public class MappedPercolation implements PercolationSystem, Closeable {
+
+    /**
+     * State bit: site is open
+     */
+    private static final int OPEN = 0x80;
+
+    /**
+     * State bit: component is connected to the top row, only meaningful for roots
+     */
+    private static final int CONNECTED_TOP = 0x40;
+
+    /**
+     * State bit: component is connected to the bottom row, only meaningful for roots
+     */
+    private static final int CONNECTED_BOTTOM = 0x20;
+
+    /**
+     * State bits holding the union rank, only meaningful for roots
+     */
+    private static final int RANK = 0x1f;
+
+    /**
+     * Sites per mapped segment, 2^28 keeps the parent segments at 1 GB (below the 2 GB limit of a buffer)
+     */
+    private static final int SEGMENT_SHIFT = 28;
+
+    /**
+     * Mask of the site index inside its segment
+     */
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    /**
+     * Size of the grid.
+     */
+    private final int n;
+
+    /**
+     * Id of the first site of the bottom row
+     */
+    private final int bottomRow;
+
+    /**
+     * Channel over the backing file, deleted on close
+     */
+    private final FileChannel channel;
+
+    /**
+     * Mapped segments of the parent links (parent + 1, 0 for roots)
+     */
+    private final MappedByteBuffer[] parents;
+
+    /**
+     * Mapped segments of the state bytes
+     */
+    private final MappedByteBuffer[] states;
+
+    /**
+     * count of open sites
+     */
+    private int openSites = 0;
+
+    /**
+     * set once a component is connected to both top and bottom
+     */
+    private boolean percolates = false;
+
+    /**
+     * Create n-by-n grid, with all sites blocked, backed by a file in the default temp directory
+     * @param n grid size
+     */
+    public MappedPercolation(int n) {
+        this(n, null);
+    }
+
+    /**
+     * Create n-by-n grid, with all sites blocked, backed by a file in the given directory
+     * @param n grid size
+     * @param directory directory of the backing file, null for the default temp directory
+     */
+    public MappedPercolation(int n, Path directory) {
+        if (n <= 0 || (long) n * n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException();
+        this.n = n;
+        this.bottomRow = (n - 1) * n;
+
+        int sites = n * n;
+        int segments = ((sites - 1) >>> SEGMENT_SHIFT) + 1;
+        parents = new MappedByteBuffer[segments];
+        states = new MappedByteBuffer[segments];
+
+        FileChannel fileChannel = null;
+        try {
+            Path file = directory == null
+                    ? Files.createTempFile("percolation", ".grid")
+                    : Files.createTempFile(directory, "percolation", ".grid");
+            fileChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            long position = 0;
+            for (int segment = 0; segment < segments; segment++) {
+                long segmentSites = Math.min(1L << SEGMENT_SHIFT, sites - ((long) segment << SEGMENT_SHIFT));
+                parents[segment] = fileChannel.map(FileChannel.MapMode.READ_WRITE, position, segmentSites * 4);
+                position += segmentSites * 4;
+                states[segment] = fileChannel.map(FileChannel.MapMode.READ_WRITE, position, segmentSites);
+                position += segmentSites;
+            }
+        } catch (IOException e) {
+            closeQuietly(fileChannel);
+            throw new UncheckedIOException(e);
+        }
+        this.channel = fileChannel;
+    }
+
+    /**
+     * Open site (row, col) if it is not open already
+     * @param row x-coordinate of the site to open
+     * @param col y-coordinate of the site to open
+     */
+    @Override
+    public void open(int row, int col) {
+        validate(row, col);
+        int site = (row - 1) * n + (col - 1);
+        if (isOpenSite(site)) {
+            return;
+        }
+
+        int flags = OPEN;
+        if (site < n) {
+            flags |= CONNECTED_TOP;
+        }
+        if (site >= bottomRow) {
+            flags |= CONNECTED_BOTTOM;
+        }
+        setState(site, flags);
+        openSites++;
+
+        int col0 = col - 1;
+        if (site >= n && isOpenSite(site - n)) {
+            union(site, site - n);
+        }
+        if (site < bottomRow && isOpenSite(site + n)) {
+            union(site, site + n);
+        }
+        if (col0 > 0 && isOpenSite(site - 1)) {
+            union(site, site - 1);
+        }
+        if (col0 < n - 1 && isOpenSite(site + 1)) {
+            union(site, site + 1);
+        }
+        int rootFlags = state(find(site)) & (CONNECTED_TOP | CONNECTED_BOTTOM);
+        if (rootFlags == (CONNECTED_TOP | CONNECTED_BOTTOM)) {
+            percolates = true;
+        }
+    }
+
+    /**
+     * Is site (row, col) open?
+     * @param row x-coordinate of the site to check
+     * @param col y-coordinate of the site to check
+     * @return boolean status of the site (open == true, closed ==false)
+     */
+    @Override
+    public boolean isOpen(int row, int col) {
+        validate(row, col);
+        return isOpenSite((row - 1) * n + (col - 1));
+    }
+
+    /**
+     * Is site (row, col) full?
+     * @param row x-coordinate of the site to check
+     * @param col y-coordinate of the site to check
+     * @return boolean status of the site (full == true, not full ==false)
+     */
+    @Override
+    public boolean isFull(int row, int col) {
+        validate(row, col);
+        int site = (row - 1) * n + (col - 1);
+        return isOpenSite(site) && (state(find(site)) & CONNECTED_TOP) != 0;
+    }
+
+    /**
+     *
+     * @return number of open sites
+     */
+    @Override
+    public int numberOfOpenSites() {
+        return openSites;
+    }
+
+    /**
+     * does the system percolate
+     * @return boolean answer if system percolates
+     */
+    @Override
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**
+     * Block every site again, keeping the same file and mappings: the file is truncated, which
+     * drops the pages written so far, and extended back to a sparse zero filled file, which is
+     * an empty grid. Runs of many trials reset one grid rather than close it and create another,
+     * as closed mappings are only released when the GC collects their buffers.
+     */
+    public void reset() {
+        try {
+            clear(channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        openSites = 0;
+        percolates = false;
+    }
+
+    /**
+     * Truncate and close the backing file, which deletes it and frees its disk blocks right away.
+     * The mappings stay reserved (but empty) until the GC collects them. The grid can not be
+     * used afterwards.
+     * @throws IOException if the file can not be truncated or closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.truncate(0);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Check the open bit of a site, no validation
+     * @param site row-major site id
+     * @return boolean status of the site
+     */
+    private boolean isOpenSite(int site) {
+        return (state(site) & OPEN) != 0;
+    }
+
+    /**
+     * Read the state byte of a site
+     * @param site site id
+     * @return state bits, 0..255
+     */
+    private int state(int site) {
+        return states[site >>> SEGMENT_SHIFT].get(site & SEGMENT_MASK) & 0xff;
+    }
+
+    /**
+     * Write the state byte of a site
+     * @param site site id
+     * @param state state bits, 0..255
+     */
+    private void setState(int site, int state) {
+        states[site >>> SEGMENT_SHIFT].put(site & SEGMENT_MASK, (byte) state);
+    }
+
+    /**
+     * Read the parent link of a site
+     * @param site site id
+     * @return parent id (the site itself for roots)
+     */
+    private int parent(int site) {
+        int stored = parents[site >>> SEGMENT_SHIFT].getInt((site & SEGMENT_MASK) << 2);
+        return stored == 0 ? site : stored - 1;
+    }
+
+    /**
+     * Write the parent link of a site
+     * @param site site id
+     * @param parent new parent id
+     */
+    private void setParent(int site, int parent) {
+        parents[site >>> SEGMENT_SHIFT].putInt((site & SEGMENT_MASK) << 2, parent + 1);
+    }
+
+    /**
+     * Root of the component of a site, halving the path on the way
+     * @param site site id
+     * @return root id
+     */
+    private int find(int site) {
+        int parent = parent(site);
+        while (site != parent) {
+            int grandParent = parent(parent);
+            setParent(site, grandParent);
+            site = grandParent;
+            parent = parent(site);
+        }
+        return site;
+    }
+
+    /**
+     * Merge the components of two sites by rank, keeping the top/bottom flags of both on the new root
+     * @param p site id
+     * @param q site id
+     */
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return;
+        }
+        int stateP = state(rootP);
+        int stateQ = state(rootQ);
+        int flags = (stateP | stateQ) & (CONNECTED_TOP | CONNECTED_BOTTOM);
+        int rankP = stateP & RANK;
+        int rankQ = stateQ & RANK;
+        if (rankP < rankQ) {
+            setParent(rootP, rootQ);
+            setState(rootQ, stateQ | flags);
+        } else {
+            setParent(rootQ, rootP);
+            if (rankP == rankQ) {
+                rankP++;
+            }
+            setState(rootP, (stateP & ~RANK) | flags | rankP);
+        }
+    }
+
+    /**
+     * Verify that coordinates are valid
+     * @param row x-coordinate
+     * @param col y-coordinate
+     */
+    private void validate(int row, int col) {
+        if (row < 1 || row > this.n)
+            throw new IllegalArgumentException();
+        if (col < 1 || col > this.n)
+            throw new IllegalArgumentException();
+    }
+
+    /**
+     * Drop the content of a mapped file and give it back its size as a sparse, zero filled file.
+     * The mappings over it stay valid and read zeros.
+     * @param fileChannel channel of the file, not empty
+     * @throws IOException if the file can not be truncated or extended
+     */
+    static void clear(FileChannel fileChannel) throws IOException {
+        long size = fileChannel.size();
+        fileChannel.truncate(0);
+        fileChannel.write(ByteBuffer.allocate(1), size - 1);
+    }
+
+    /**
+     * Close a channel after a failure, keeping the original exception
+     * @param fileChannel channel to close, may be null
+     */
+    private static void closeQuietly(FileChannel fileChannel) {
+        if (fileChannel == null) {
+            return;
+        }
+        try {
+            fileChannel.close();
+        } catch (IOException ignored) {
+            // the original failure is more relevant
+        }
+    }
+
+    /**
+     * Run trials on n-by-n off-heap grids through PercolationStats and print the stats. Each
+     * running batch of trials resets one grid between its trials and the shuffled site ids are
+     * kept off-heap as well, so neither the heap use nor the mapped files grow with n or trials.
+     * @param args arg1: size of the grid, arg2 (optional): trials, default 1,
+     *             arg3 (optional): seed, arg4 (optional): number of worker threads
+     */
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int trials = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : SplitMix64.current().nextLong();
+        ForkJoinPool pool = args.length > 3 ? new ForkJoinPool(Integer.parseInt(args[3])) : null;
+
+        PercolationStats ps;
+        try {
+            ps = new PercolationStats(n, trials, seed, pool, MappedPercolation::new);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        System.out.println("mean                    = " + ps.mean());
+        System.out.println("stddev                  = " + ps.stddev());
+        System.out.println("95% confidence interval = [" + ps.confidenceLo() + ", " + ps.confidenceHi() + "]");
+    }
+}
@@ -0,0 +1,141 @@
+package week1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Permutation of 0..size-1 kept in a memory-mapped temp file, so PercolationStats can shuffle
+ * the site ids of an off-heap grid (week1.MappedPercolation) without an int[n*n] on the heap.
+ * Entry i is stored as value - i, so the freshly created (sparse, zero filled) file is the
+ * identity and construction does not touch every page. reset() goes back to the identity in
+ * the same file and mappings; closing truncates and deletes the file.
+ */
+final class MappedPermutation implements Closeable {
+
+    /**
+     * Entries per mapped segment, 2^28 keeps a segment at 1 GB (below the 2 GB limit of a buffer)
+     */
+    private static final int SEGMENT_SHIFT = 28;
+
+    /**
+     * Mask of the entry index inside its segment
+     */
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    /**
+     * Number of entries
+     */
+    private final int size;
+
+    /**
+     * Channel over the backing file, deleted on close
+     */
+    private final FileChannel channel;
+
+    /**
+     * Mapped segments of the entries (value - index)
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Create the identity permutation of 0..size-1, backed by a file in the default temp directory
+     * @param size number of entries
+     */
+    MappedPermutation(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException();
+        this.size = size;
+        segments = new MappedByteBuffer[((size - 1) >>> SEGMENT_SHIFT) + 1];
+
+        FileChannel fileChannel = null;
+        try {
+            Path file = Files.createTempFile("permutation", ".ids");
+            fileChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            for (int segment = 0; segment < segments.length; segment++) {
+                long first = (long) segment << SEGMENT_SHIFT;
+                long entries = Math.min(1L << SEGMENT_SHIFT, size - first);
+                segments[segment] = fileChannel.map(FileChannel.MapMode.READ_WRITE, first * 4, entries * 4);
+            }
+        } catch (IOException e) {
+            if (fileChannel != null) {
+                try {
+                    fileChannel.close();
+                } catch (IOException ignored) {
+                    // the original failure is more relevant
+                }
+            }
+            throw new UncheckedIOException(e);
+        }
+        this.channel = fileChannel;
+    }
+
+    /**
+     *
+     * @return number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Entry at a position
+     * @param i position, no validation
+     * @return value at position i
+     */
+    int get(int i) {
+        return segments[i >>> SEGMENT_SHIFT].getInt((i & SEGMENT_MASK) << 2) + i;
+    }
+
+    /**
+     * Exchange the entries at two positions
+     * @param i position, no validation
+     * @param j position, no validation
+     */
+    void swap(int i, int j) {
+        int valueI = get(i);
+        int valueJ = get(j);
+        set(i, valueJ);
+        set(j, valueI);
+    }
+
+    /**
+     * Go back to the identity, dropping the pages written so far (see MappedPercolation.reset())
+     */
+    void reset() {
+        try {
+            MappedPercolation.clear(channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Truncate and close the backing file, which deletes it and frees its disk blocks right away.
+     * The mappings stay reserved (but empty) until the GC collects them.
+     * @throws IOException if the file can not be truncated or closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.truncate(0);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Write the entry at a position
+     * @param i position
+     * @param value new value
+     */
+    private void set(int i, int value) {
+        segments[i >>> SEGMENT_SHIFT].putInt((i & SEGMENT_MASK) << 2, value - i);
+    }
+}
@@ -0,0 +1,79 @@
+package week1;
+
+/**
+ * Square lattice with 8-neighbour (Moore) connectivity: sides and diagonals.
+ * Sites are numbered row by row, row 0 is the top and row n-1 the bottom.
+ */
+public class MooreLattice implements Lattice {
+
+    /**
+     * Size of the lattice.
+     */
+    private final int n;
+
+    /**
+     * Create an n-by-n lattice
+     * @param n lattice size
+     */
+    public MooreLattice(int n) {
+        if (n <= 0 || (long) n * n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException();
+        this.n = n;
+    }
+
+    @Override
+    public int sites() {
+        return n * n;
+    }
+
+    @Override
+    public int maxDegree() {
+        return 8;
+    }
+
+    @Override
+    public int neighbours(int site, int[] out) {
+        int row = site / n;
+        int col = site - row * n;
+        int count = 0;
+        boolean up = row > 0;
+        boolean down = row < n - 1;
+        boolean left = col > 0;
+        boolean right = col < n - 1;
+        if (up) {
+            out[count++] = site - n;
+            if (left) {
+                out[count++] = site - n - 1;
+            }
+            if (right) {
+                out[count++] = site - n + 1;
+            }
+        }
+        if (down) {
+            out[count++] = site + n;
+            if (left) {
+                out[count++] = site + n - 1;
+            }
+            if (right) {
+                out[count++] = site + n + 1;
+            }
+        }
+        if (left) {
+            out[count++] = site - 1;
+        }
+        if (right) {
+            out[count++] = site + 1;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isTop(int site) {
+        return site < n;
+    }
+
+    @Override
+    public boolean isBottom(int site) {
+        return site >= (n - 1) * n;
+    }
+}
@@ -0,0 +1,191 @@
+package week1;
+
+import common.SplitMix64;
+
+/**
+ * Percolation threshold estimator based on the Newman-Ziff sweep: every trial opens the
+ * sites of one random permutation and records the exact open count at which the grid first
+ * percolates. A single week1.FlatPercolation and a single permutation array are reused by all
+ * the trials (reset in O(n^2) instead of reallocating), which keeps GC out of large grids.
+ * Optionally the whole percolation probability curve is kept: P(k) for k open sites, and
+ * P(p) by binomial convolution of P(k).
+ *
+ * To execute: java week1.NewmanZiffStats n trials [seed]
+ */
+public class NewmanZiffStats {
+
+    /**
+     * Size of the grid
+     */
+    private final int n;
+
+    /**
+     * amount of trials to run
+     */
+    private final int trials;
+
+    /**
+     * mean/variance of the thresholds (open sites count / total sites at first percolation)
+     */
+    private final StatsAccumulator stats = new StatsAccumulator();
+
+    /**
+     * percolatedBy[k] = number of trials that percolated with at most k open sites,
+     * null when the curve was not requested
+     */
+    private final int[] percolatedBy;
+
+    /**
+     * Perform trials sweeps on an n-by-n grid
+     * @param n grid size
+     * @param trials number of trials to run
+     * @param seed seed of the random streams used by the trials
+     * @param recordCurve keep the counts needed by percolationProbability()
+     */
+    public NewmanZiffStats(int n, int trials, long seed, boolean recordCurve) {
+
+        if (n <= 0 || trials <= 0)
+            throw new IllegalArgumentException();
+
+        this.n = n;
+        this.trials = trials;
+        this.percolatedBy = recordCurve ? new int[n*n + 1] : null;
+
+        FlatPercolation percolation = new FlatPercolation(n);
+        int[] sites = new int[n*n];
+        for (int site = 0; site < sites.length; site++) {
+            sites[site] = site;
+        }
+
+        for (int t = 0; t < trials; t++) {
+            SplitMix64 random = new SplitMix64(SplitMix64.streamSeed(seed, t));
+            percolation.reset();
+            for (int i = 0; !percolation.percolates(); i++) {
+                int j = random.nextInt(i, sites.length);
+                int site = sites[j];
+                sites[j] = sites[i];
+                sites[i] = site;
+                percolation.open(site / n + 1, site % n + 1);
+            }
+            int threshold = percolation.numberOfOpenSites();
+            stats.add((double) threshold / ((double) n * n));
+            if (percolatedBy != null) {
+                percolatedBy[threshold]++;
+            }
+        }
+
+        if (percolatedBy != null) {
+            for (int k = 1; k < percolatedBy.length; k++) {
+                percolatedBy[k] += percolatedBy[k - 1];
+            }
+        }
+    }
+
+    /**
+     *
+     * @return sample mean of percolation threshold
+     */
+    public double mean() {
+        return stats.mean();
+    }
+
+    /**
+     *
+     * @return sample standard deviation of percolation threshold
+     */
+    public double stddev() {
+        return stats.stddev();
+    }
+
+    /**
+     *
+     * @return low  endpoint of 95% confidence interval
+     */
+    public double confidenceLo() {
+        return stats.confidenceLo();
+    }
+
+    /**
+     *
+     * @return  high endpoint of 95% confidence interval
+     */
+    public double confidenceHi() {
+        return stats.confidenceHi();
+    }
+
+    /**
+     * Fraction of the trials that percolated with exactly openSites sites open (P(k))
+     * @param openSites number of open sites, 0..n*n
+     * @return estimated percolation probability
+     */
+    public double percolationProbability(int openSites) {
+        if (percolatedBy == null)
+            throw new IllegalStateException("curve not recorded");
+        if (openSites < 0 || openSites > n*n)
+            throw new IllegalArgumentException();
+        return (double) percolatedBy[openSites] / trials;
+    }
+
+    /**
+     * Percolation probability when each site is open with probability p, obtained by
+     * convolving P(k) with the binomial distribution B(n*n, p). The binomial weights are
+     * built outwards from the mode and normalised, so they do not underflow on large grids.
+     * @param p site vacancy probability, 0..1
+     * @return estimated percolation probability
+     */
+    public double percolationProbability(double p) {
+        if (percolatedBy == null)
+            throw new IllegalStateException("curve not recorded");
+        if (!(p >= 0 && p <= 1))
+            throw new IllegalArgumentException();
+
+        int total = n*n;
+        if (p == 0) {
+            return percolationProbability(0);
+        }
+        if (p == 1) {
+            return percolationProbability(total);
+        }
+
+        int mode = (int) Math.min(total, Math.floor(p * (total + 1)));
+        double odds = p / (1 - p);
+        double weights = 1;
+        double sum = percolatedBy[mode];
+
+        double weight = 1;
+        for (int k = mode; k < total && weight > 1e-18; k++) {
+            weight *= odds * (total - k) / (k + 1);
+            weights += weight;
+            sum += weight * percolatedBy[k + 1];
+        }
+        weight = 1;
+        for (int k = mode; k > 0 && weight > 1e-18; k--) {
+            weight *= k / (odds * (total - k + 1));
+            weights += weight;
+            sum += weight * percolatedBy[k - 1];
+        }
+
+        return sum / weights / trials;
+    }
+
+    /**
+     * Run trials sweeps in an n sized grid and print the stats plus a few points of P(p)
+     * @param args arg1: size of the grid, arg2: trials to run, arg3 (optional): seed
+     */
+    public static void main(String[] args) {
+
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+        NewmanZiffStats stats = new NewmanZiffStats(n, trials, seed, true);
+
+        System.out.println("mean                    = " + stats.mean());
+        System.out.println("stddev                  = " + stats.stddev());
+        System.out.println("95% confidence interval = [" + stats.confidenceLo() + ", " + stats.confidenceHi() + "]");
+        for (int i = 50; i <= 70; i += 2) {
+            double p = i / 100.0;
+            System.out.println("P(" + p + ") = " + stats.percolationProbability(p));
+        }
+    }
+}
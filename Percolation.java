@@ -8,7 +8,7 @@ import edu.princeton.cs.algs4.WeightedQuickUnionUF;
  *
  * To execute from command line use week1.PercolationStats instead.
  */
-public class Percolation {
+public class Percolation implements PercolationSystem {
 
     /**
      * Constant to identify Top neighbour
@@ -30,6 +30,16 @@ public class Percolation {
      */
     private static final char RIGHT = 'R';
 
+    /**
+     * Root flag: component is connected to the top row
+     */
+    private static final byte CONNECTED_TOP = 1;
+
+    /**
+     * Root flag: component is connected to the bottom row
+     */
+    private static final byte CONNECTED_BOTTOM = 2;
+
     /**
      * Size of the grid.
      */
@@ -50,6 +60,17 @@ public class Percolation {
      */
     private final WeightedQuickUnionUF unionFind;
 
+    /**
+     * CONNECTED_TOP/CONNECTED_BOTTOM flags of each component, only meaningful for roots.
+     * Replaces the virtual top and bottom sites, so a bottom row site is never reported
+     * full just because the system percolates (backwash).
+     */
+    private final byte[] rootFlags;
+
+    /**
+     * set once a component is connected to both top and bottom
+     */
+    private boolean percolates = false;
 
 
     /**
@@ -59,7 +80,8 @@ public class Percolation {
     public Percolation(int n) {
         this.n = n;
         isOpen = new boolean[n][n];
-        unionFind = new WeightedQuickUnionUF((n*n)+2);
+        unionFind = new WeightedQuickUnionUF(n*n);
+        rootFlags = new byte[n*n];
     }
 
     /**
@@ -67,6 +89,7 @@ public class Percolation {
      * @param row x-coordinate of the site to open
      * @param col y-coordinate of the site to open
      */
+    @Override
     public void open(int row, int col) {
 
         validate(row, col);
@@ -77,21 +100,32 @@ public class Percolation {
             isOpen[row - 1][col - 1] = true;
             openSites++;
 
+            if (1 == row) {
+                rootFlags[coordinate] |= CONNECTED_TOP;
+            }
+            if (this.n == row) {
+                rootFlags[coordinate] |= CONNECTED_BOTTOM;
+            }
+
             int top = getOpenNeighbour(TOP, row, col);
             if (top >= 0) {
-                unionFind.union(coordinate, top);
+                union(coordinate, top);
             }
             int bottom = getOpenNeighbour(BOTTOM, row, col);
             if (bottom >= 0) {
-                unionFind.union(coordinate, bottom);
+                union(coordinate, bottom);
             }
             int left = getOpenNeighbour(LEFT, row, col);
             if (left >= 0) {
-                unionFind.union(coordinate, left);
+                union(coordinate, left);
             }
             int right = getOpenNeighbour(RIGHT, row, col);
             if (right >= 0) {
-                unionFind.union(coordinate, right);
+                union(coordinate, right);
+            }
+
+            if (rootFlags[unionFind.find(coordinate)] == (CONNECTED_TOP | CONNECTED_BOTTOM)) {
+                percolates = true;
             }
         }
     }
@@ -102,6 +136,7 @@ public class Percolation {
      * @param col y-coordinate of the site to check
      * @return boolean status of the site (open == true, closed ==false)
      */
+    @Override
     public boolean isOpen(int row, int col) {
 
         validate(row, col);
@@ -115,17 +150,20 @@ public class Percolation {
      * @param col y-coordinate of the site to check
      * @return boolean status of the site (full == true, not full ==false)
      */
+    @Override
     public boolean isFull(int row, int col) {
 
         validate(row, col);
 
-        return unionFind.connected(0, xyTo1D(row, col, this.n));
+        return isOpen[row-1][col-1]
+                && (rootFlags[unionFind.find(xyTo1D(row, col, this.n))] & CONNECTED_TOP) != 0;
     }
 
     /**
      *
      * @return number of open sites
      */
+    @Override
     public int numberOfOpenSites() {
         return openSites;
     }
@@ -135,8 +173,9 @@ public class Percolation {
      * @return boolean answer if system percolates
      */
 
+    @Override
     public boolean percolates() {
-        return unionFind.connected(0, (n*n)+1);
+        return percolates;
     }
 
     /**
@@ -147,7 +186,18 @@ public class Percolation {
      * @return uni-dimensional coordinate
      */
     private int xyTo1D(int row, int col, int n) {
-        return col + ((row -1) * n);
+        return (col - 1) + ((row -1) * n);
+    }
+
+    /**
+     * Union two sites and keep the top/bottom flags of both components on the new root
+     * @param p uni-dimensional coordinate
+     * @param q uni-dimensional coordinate
+     */
+    private void union(int p, int q) {
+        byte flags = (byte) (rootFlags[unionFind.find(p)] | rootFlags[unionFind.find(q)]);
+        unionFind.union(p, q);
+        rootFlags[unionFind.find(p)] = flags;
     }
 
     /**
@@ -173,14 +223,14 @@ public class Percolation {
         switch (position) {
             case TOP:
                 if (1 == row) {
-                    return 0;
+                    return -1;
                 } else if (isOpen(row-1, col)) {
                     return xyTo1D(row-1, col, this.n);
                 }
                 return -1;
             case BOTTOM:
                 if (this.n == row) {
-                    return (n * n) + 1;
+                    return -1;
                 } else if (isOpen(row+1, col)) {
                     return xyTo1D(row+1, col, this.n);
                 }
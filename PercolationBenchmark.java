@@ -0,0 +1,349 @@
+package week1;
+
+import common.SplitMix64;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+/**
+ * Micro benchmarks of the percolation hot loops, without external dependencies:
+ * open() at several fill fractions (about 200k opens timed per iteration), isFull() and
+ * percolates() near the threshold (cycling through grids, so the call is not hoisted), and whole
+ * PercolationStats runs for n in {64, 512, 2048}, for both backends. Every benchmark is
+ * warmed up, then measured over several iterations (setup excluded from the timing).
+ * Results are written as JSON, using the field names of JMH's JSON output
+ * (benchmark, params, mode, primaryMetric.score/scoreError/scoreUnit/rawData), so the
+ * same tooling can diff runs.
+ *
+ * To execute: java week1.PercolationBenchmark [output.json [filter]]
+ * Without output file the JSON goes to standard output, filter keeps benchmarks whose name contains it.
+ */
+public class PercolationBenchmark {
+
+    /**
+     * Grid size of the isFull benchmarks
+     */
+    private static final int GRID = 512;
+
+    /**
+     * Grid size of the open benchmarks, large enough that one iteration times about 200k opens
+     */
+    private static final int OPEN_GRID = 2048;
+
+    /**
+     * Fraction of the sites opened in the timed region of an open benchmark iteration
+     */
+    private static final double OPEN_BATCH = 0.05;
+
+    /**
+     * Grids the percolates benchmark cycles through, so the call can not be hoisted out of
+     * the loop, and their size (percolates() does not depend on it)
+     */
+    private static final int PERCOLATES_GRIDS = 16, PERCOLATES_GRID = 128;
+
+    /**
+     * Seed of every benchmark, runs are comparable
+     */
+    private static final long SEED = 20190625L;
+
+    /**
+     * Results consumed here so the JIT can not drop the measured calls
+     */
+    private static volatile long sink;
+
+    /**
+     * One benchmark: a setup that is not timed and a run that is, reporting operations done
+     */
+    private abstract static class Case {
+
+        /**
+         * Benchmark name
+         */
+        final String name;
+
+        /**
+         * Parameters as JSON object members, e.g. "n": "512"
+         */
+        final String params;
+
+        /**
+         * Untimed warm up and measured iterations
+         */
+        final int warmup, iterations;
+
+        Case(String name, String params, int warmup, int iterations) {
+            this.name = name;
+            this.params = params;
+            this.warmup = warmup;
+            this.iterations = iterations;
+        }
+
+        /**
+         * Prepare the state of one iteration
+         */
+        abstract void setup();
+
+        /**
+         * Run the measured operations
+         * @return number of operations done
+         */
+        abstract long run();
+    }
+
+    /**
+     * Grid opened up to a fill fraction, plus the shuffled order of the remaining sites
+     */
+    private static class FilledGrid {
+
+        /**
+         * The grid
+         */
+        final PercolationSystem percolation;
+
+        /**
+         * Rows and cols of every site, in random order, the first opened ones are open
+         */
+        final int[] rows, cols;
+
+        /**
+         * Number of sites opened by the setup
+         */
+        final int opened;
+
+        FilledGrid(IntFunction<? extends PercolationSystem> backend, int n, double fill) {
+            percolation = backend.apply(n);
+            int total = n * n;
+            rows = new int[total];
+            cols = new int[total];
+            int[] sites = new int[total];
+            for (int site = 0; site < total; site++) {
+                sites[site] = site;
+            }
+            SplitMix64 random = new SplitMix64(SEED);
+            for (int i = 0; i < total; i++) {
+                int j = random.nextInt(i, total);
+                int site = sites[j];
+                sites[j] = sites[i];
+                sites[i] = site;
+                rows[i] = site / n + 1;
+                cols[i] = site % n + 1;
+            }
+            opened = (int) (fill * total);
+            for (int i = 0; i < opened; i++) {
+                percolation.open(rows[i], cols[i]);
+            }
+        }
+    }
+
+    /**
+     * Build the list of benchmarks
+     * @return all the benchmarks
+     */
+    private static List<Case> cases() {
+        List<Case> cases = new ArrayList<>();
+        String[] names = {"uf", "flat"};
+        List<IntFunction<? extends PercolationSystem>> backends = new ArrayList<>();
+        backends.add(Percolation::new);
+        backends.add(FlatPercolation::new);
+
+        for (int b = 0; b < names.length; b++) {
+            String backendName = names[b];
+            IntFunction<? extends PercolationSystem> backend = backends.get(b);
+
+            for (double fill : new double[] {0.1, 0.3, 0.5, 0.59}) {
+                String params = "\"backend\": \"" + backendName + "\", \"n\": \"" + OPEN_GRID + "\", \"fill\": \"" + fill + "\"";
+                cases.add(new Case("week1.PercolationBenchmark.open", params, 5, 10) {
+                    private FilledGrid grid;
+
+                    @Override
+                    void setup() {
+                        grid = null; // let the previous grid go before allocating the next
+                        grid = new FilledGrid(backend, OPEN_GRID, fill);
+                    }
+
+                    @Override
+                    long run() {
+                        int batch = (int) (OPEN_BATCH * OPEN_GRID * OPEN_GRID);
+                        for (int i = grid.opened; i < grid.opened + batch; i++) {
+                            grid.percolation.open(grid.rows[i], grid.cols[i]);
+                        }
+                        return batch;
+                    }
+                });
+            }
+
+            String params = "\"backend\": \"" + backendName + "\", \"n\": \"" + GRID + "\", \"fill\": \"0.59\"";
+            cases.add(new Case("week1.PercolationBenchmark.isFull", params, 3, 5) {
+                private FilledGrid grid;
+
+                @Override
+                void setup() {
+                    if (grid == null) {
+                        grid = new FilledGrid(backend, GRID, 0.59);
+                    }
+                }
+
+                @Override
+                long run() {
+                    long full = 0;
+                    for (int i = 0; i < grid.rows.length; i++) {
+                        if (grid.percolation.isFull(grid.rows[i], grid.cols[i])) {
+                            full++;
+                        }
+                    }
+                    sink += full;
+                    return grid.rows.length;
+                }
+            });
+            String percolatesParams = "\"backend\": \"" + backendName + "\", \"n\": \"" + PERCOLATES_GRID
+                    + "\", \"fill\": \"0.52-0.66\"";
+            cases.add(new Case("week1.PercolationBenchmark.percolates", percolatesParams, 3, 5) {
+                private PercolationSystem[] grids;
+
+                @Override
+                void setup() {
+                    if (grids == null) {
+                        // fills spread around the threshold, so the answers differ between grids
+                        grids = new PercolationSystem[PERCOLATES_GRIDS];
+                        for (int g = 0; g < grids.length; g++) {
+                            double fill = 0.52 + 0.14 * g / (grids.length - 1);
+                            grids[g] = new FilledGrid(backend, PERCOLATES_GRID, fill).percolation;
+                        }
+                    }
+                }
+
+                @Override
+                long run() {
+                    int calls = 1 << 24;
+                    long percolated = 0;
+                    for (int i = 0; i < calls; i++) {
+                        if (grids[i & (PERCOLATES_GRIDS - 1)].percolates()) {
+                            percolated += i;
+                        }
+                    }
+                    sink += percolated;
+                    return calls;
+                }
+            });
+
+            int[][] statsRuns = {{64, 200}, {512, 8}, {2048, 1}};
+            for (int[] statsRun : statsRuns) {
+                int n = statsRun[0];
+                int trials = statsRun[1];
+                String statsParams = "\"backend\": \"" + backendName + "\", \"n\": \"" + n + "\", \"trials\": \"" + trials + "\"";
+                cases.add(new Case("week1.PercolationBenchmark.stats", statsParams, 1, 3) {
+                    @Override
+                    void setup() {
+                    }
+
+                    @Override
+                    long run() {
+                        PercolationStats stats = new PercolationStats(n, trials, SEED, null, backend);
+                        sink += Double.doubleToLongBits(stats.mean());
+                        return trials;
+                    }
+                });
+            }
+        }
+        return cases;
+    }
+
+    /**
+     * Measure one benchmark
+     * @param benchmark benchmark to run
+     * @return average time per operation of each measured iteration, in ns
+     */
+    private static double[] measure(Case benchmark) {
+        for (int i = 0; i < benchmark.warmup; i++) {
+            benchmark.setup();
+            benchmark.run();
+        }
+        double[] scores = new double[benchmark.iterations];
+        for (int i = 0; i < benchmark.iterations; i++) {
+            benchmark.setup();
+            long start = System.nanoTime();
+            long operations = benchmark.run();
+            scores[i] = (double) (System.nanoTime() - start) / operations;
+        }
+        return scores;
+    }
+
+    /**
+     * Accumulate the scores of the measured iterations
+     * @param scores ns/op of each iteration
+     * @return mean/variance of the scores
+     */
+    private static StatsAccumulator summarize(double[] scores) {
+        StatsAccumulator stats = new StatsAccumulator();
+        for (double score : scores) {
+            stats.add(score);
+        }
+        return stats;
+    }
+
+    /**
+     * Format one result as a JMH style JSON object
+     * @param benchmark benchmark that was run
+     * @param scores ns/op of each iteration
+     * @return JSON object
+     */
+    private static String toJson(Case benchmark, double[] scores) {
+        StatsAccumulator stats = summarize(scores);
+        StringBuilder raw = new StringBuilder();
+        for (double score : scores) {
+            if (raw.length() > 0) {
+                raw.append(", ");
+            }
+            raw.append(String.format(Locale.ROOT, "%.3f", score));
+        }
+        double error = scores.length > 1 ? stats.halfWidth() : Double.NaN;
+        return String.format(Locale.ROOT,
+                "  {\n"
+                + "    \"benchmark\": \"%s\",\n"
+                + "    \"mode\": \"avgt\",\n"
+                + "    \"warmupIterations\": %d,\n"
+                + "    \"measurementIterations\": %d,\n"
+                + "    \"params\": {%s},\n"
+                + "    \"primaryMetric\": {\n"
+                + "      \"score\": %.3f,\n"
+                + "      \"scoreError\": %s,\n"
+                + "      \"scoreUnit\": \"ns/op\",\n"
+                + "      \"rawData\": [[%s]]\n"
+                + "    }\n"
+                + "  }",
+                benchmark.name, benchmark.warmup, benchmark.iterations, benchmark.params, stats.mean(),
+                Double.isNaN(error) ? "\"NaN\"" : String.format(Locale.ROOT, "%.3f", error), raw);
+    }
+
+    /**
+     * Run the benchmarks and write the JSON results
+     * @param args arg1 (optional): output file, arg2 (optional): name filter
+     * @throws IOException if the output file can not be written
+     */
+    public static void main(String[] args) throws IOException {
+
+        String filter = args.length > 1 ? args[1] : "";
+        List<String> results = new ArrayList<>();
+        for (Case benchmark : cases()) {
+            if (!benchmark.name.contains(filter)) {
+                continue;
+            }
+            double[] scores = measure(benchmark);
+            System.err.println(benchmark.name + " {" + benchmark.params + "}: "
+                    + String.format(Locale.ROOT, "%.3f", summarize(scores).mean()) + " ns/op");
+            results.add(toJson(benchmark, scores));
+        }
+
+        String json = "[\n" + String.join(",\n", results) + "\n]\n";
+        if (args.length > 0) {
+            Files.write(Paths.get(args[0]), json.getBytes("UTF-8"));
+        } else {
+            System.out.print(json);
+        }
+    }
+}
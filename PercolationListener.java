@@ -0,0 +1,31 @@
+package week1;
+
+/**
+ * Callbacks fired by week1.FlatPercolation while sites are opened, see
+ * FlatPercolation.setListener. Every method does nothing by default, implement only the
+ * events of interest. Callbacks run on the thread calling open and must not modify the grid.
+ */
+public interface PercolationListener {
+
+    /**
+     * A site became full (connected to the top row). Fired once per site.
+     * @param row x-coordinate of the site
+     * @param col y-coordinate of the site
+     */
+    default void siteFull(int row, int col) {
+    }
+
+    /**
+     * Two clusters of open sites merged, including a newly opened site joining a cluster
+     * @param size size of the merged cluster
+     */
+    default void clustersMerged(int size) {
+    }
+
+    /**
+     * The system percolated for the first time
+     * @param openSites number of open sites at that moment
+     */
+    default void percolated(int openSites) {
+    }
+}
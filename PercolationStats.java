@@ -1,26 +1,54 @@
 package week1;
 
-import edu.princeton.cs.algs4.StdRandom;
-import edu.princeton.cs.algs4.StdStats;
+import common.RandomSource;
+import common.SplitMix64;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
 
 /**
  * Author: Vagner Planello
  * Date: 25/jun/2019
  *
- * To execute: java week1.PercolationStats n trials
- * Where n is the size of the matrix and trials is the number of simulations
+ * To execute: java week1.PercolationStats n trials [seed [threads [backend [checkpoint]]]]
+ * Where n is the size of the matrix and trials is the number of simulations.
+ * Optional seed makes the run reproducible and threads spreads the trials over a pool.
+ * Backend is uf (week1.Percolation, default), flat (week1.FlatPercolation) or mapped
+ * (week1.MappedPercolation, off-heap: the grid and the shuffled site ids live in temp files).
+ * With a checkpoint file the run saves its progress there and resumes from it when restarted.
  */
 public class PercolationStats {
 
     /**
-     * results obtained in the trials (openSites/totalSites when percolated)
+     * Trials per batch: a batch runs on one thread and is merged as a whole
+     */
+    private static final int BATCH_SIZE = 16;
+
+    /**
+     * Batches kept in flight per pool worker, so workers do not wait for the in-order merge
+     */
+    private static final int BATCHES_PER_WORKER = 4;
+
+    /**
+     * Marker written at the start of checkpoint files
      */
-    private double[] results;
+    static final int CHECKPOINT_MAGIC = 0x50534350;
 
     /**
-     * amount of trials to run
+     * mean/variance of the results obtained in the trials (openSites/totalSites when percolated)
      */
-    private int trials;
+    private final StatsAccumulator stats;
 
     /**
      * Perform trials independent experiments on an n-by-n grid
@@ -28,28 +56,502 @@ public class PercolationStats {
      * @param trials number of trials to run
      */
     public PercolationStats(int n, int trials) {
+        this(n, trials, SplitMix64.current().nextLong());
+    }
+
+    /**
+     * Perform trials independent experiments on an n-by-n grid, sequentially, with a fixed seed
+     * @param n grid size
+     * @param trials number of trials to run
+     * @param seed seed of the random streams used by the trials
+     */
+    public PercolationStats(int n, int trials, long seed) {
+        this(n, trials, seed, null);
+    }
+
+    /**
+     * Perform trials independent experiments on an n-by-n grid, spread over a fork-join pool.
+     * Every trial draws from its own stream derived from (seed, trial index), so the results
+     * are the same as the sequential run for the same seed, whatever the pool size.
+     * @param n grid size
+     * @param trials number of trials to run
+     * @param seed seed of the random streams used by the trials
+     * @param pool pool that runs the trials, or null to run them on the calling thread
+     */
+    public PercolationStats(int n, int trials, long seed, ForkJoinPool pool) {
+        this(n, trials, seed, pool, Percolation::new);
+    }
+
+    /**
+     * Perform trials independent experiments on an n-by-n grid of the given backend
+     * @param n grid size
+     * @param trials number of trials to run
+     * @param seed seed of the random streams used by the trials
+     * @param pool pool that runs the trials, or null to run them on the calling thread
+     * @param backend creates an empty n-by-n grid, e.g. Percolation::new or FlatPercolation::new
+     */
+    public PercolationStats(int n, int trials, long seed, ForkJoinPool pool,
+                            IntFunction<? extends PercolationSystem> backend) {
 
         if (n <= 0 || trials <= 0)
             throw new IllegalArgumentException();
 
-        this.trials = trials;
+        stats = new StatsAccumulator();
+        runBatches(n, trials, seed, pool, backend, 0, stats, null);
+    }
+
+    /**
+     * Wrap results that were already accumulated
+     * @param stats accumulated results
+     */
+    private PercolationStats(StatsAccumulator stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Run trials on an n-by-n grid until the 95% confidence interval is narrow enough.
+     * Batches are merged in order and the run stops at the first batch after which
+     * 1.96*stddev/sqrt(T) is at most halfWidth, so the outcome (trials used included) only
+     * depends on the seed, not on the pool size.
+     * @param n grid size
+     * @param halfWidth target half width of the 95% confidence interval, e.g. 0.0005
+     * @param maxTrials budget, the run stops there even if the target was not reached
+     * @param seed seed of the random streams used by the trials
+     * @param pool pool that runs the batches, or null to run them on the calling thread
+     * @param backend creates an empty n-by-n grid, e.g. Percolation::new or FlatPercolation::new
+     * @return stats of the trials that were used, see numberOfTrials()
+     */
+    public static PercolationStats untilHalfWidth(int n, double halfWidth, int maxTrials, long seed,
+                                                  ForkJoinPool pool,
+                                                  IntFunction<? extends PercolationSystem> backend) {
+
+        if (n <= 0 || maxTrials <= 0 || !(halfWidth > 0))
+            throw new IllegalArgumentException();
+
+        StatsAccumulator stats = new StatsAccumulator();
+        runBatches(n, maxTrials, seed, pool, backend, halfWidth, stats, null);
+        return new PercolationStats(stats);
+    }
+
+    /**
+     * Perform trials experiments like the constructor, saving the progress (accumulated stats
+     * plus the position in the trial sequence, which is all the random state there is) to a
+     * checkpoint file at most every intervalMillis. If the file already exists the run resumes
+     * from it, and the final stats are bit-identical to an uninterrupted run with the same seed.
+     * The file is written to a temp sibling first and then moved over, so a crash while saving
+     * leaves the previous checkpoint intact.
+     * @param n grid size
+     * @param trials number of trials to run
+     * @param seed seed of the random streams used by the trials
+     * @param pool pool that runs the trials, or null to run them on the calling thread
+     * @param backend creates an empty n-by-n grid, e.g. Percolation::new or FlatPercolation::new
+     * @param checkpoint checkpoint file, created if missing
+     * @param intervalMillis minimum time between two saves, 0 to save after every batch
+     * @return stats of all the trials
+     * @throws IOException if the checkpoint can not be read or written, or belongs to another run
+     */
+    public static PercolationStats resumable(int n, int trials, long seed, ForkJoinPool pool,
+                                             IntFunction<? extends PercolationSystem> backend,
+                                             Path checkpoint, long intervalMillis) throws IOException {
+
+        if (n <= 0 || trials <= 0 || intervalMillis < 0)
+            throw new IllegalArgumentException();
+
+        StatsAccumulator stats = new StatsAccumulator();
+        if (Files.exists(checkpoint)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(checkpoint))) {
+                if (in.readInt() != CHECKPOINT_MAGIC || in.readInt() != n || in.readInt() != trials
+                        || in.readLong() != seed) {
+                    throw new IOException("checkpoint " + checkpoint + " belongs to another run");
+                }
+                stats = StatsAccumulator.readFrom(in);
+            }
+        }
+
+        CheckpointWriter writer = new CheckpointWriter(checkpoint, n, trials, seed, intervalMillis);
+        try {
+            runBatches(n, trials, seed, pool, backend, 0, stats, writer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.save(stats);
+        return new PercolationStats(stats);
+    }
+
+    /**
+     * Run the trials stats.count()..maxTrials-1 in batches of BATCH_SIZE and merge each batch
+     * into stats in trial order. With a pool, up to BATCHES_PER_WORKER batches per worker
+     * run ahead of the merge. The batch boundaries and the merge order never depend on the
+     * pool, so every mode gives the same bits for the same seed.
+     * @param n grid size
+     * @param maxTrials index after the last trial to run
+     * @param seed seed of the random streams used by the trials
+     * @param pool pool that runs the batches, or null to run them on the calling thread
+     * @param backend creates an empty n-by-n grid
+     * @param halfWidth stop after the first batch that brings the 95% half width down to this, 0 to run all the trials
+     * @param stats results so far, the first trial to run is stats.count()
+     * @param writer checkpoint writer called after each merged batch, may be null
+     */
+    private static void runBatches(int n, int maxTrials, long seed, ForkJoinPool pool,
+                                   IntFunction<? extends PercolationSystem> backend, double halfWidth,
+                                   StatsAccumulator stats, CheckpointWriter writer) {
+        int inFlight = pool == null ? 1 : pool.getParallelism() * BATCHES_PER_WORKER;
+        ArrayDeque<TrialTask> pending = new ArrayDeque<>(inFlight);
+        int next = (int) stats.count();
+        SpareGrids spares = new SpareGrids();
+        try {
+            while (next < maxTrials || !pending.isEmpty()) {
+                while (next < maxTrials && pending.size() < inFlight) {
+                    int to = (int) Math.min((long) next + BATCH_SIZE, maxTrials);
+                    TrialTask task = new TrialTask(n, seed, backend, spares, next, to);
+                    if (pool != null) {
+                        pool.execute(task);
+                    }
+                    pending.addLast(task);
+                    next = to;
+                }
+                TrialTask task = pending.removeFirst();
+                stats.merge(pool == null ? task.compute() : task.join());
+                if (writer != null) {
+                    writer.saveIfDue(stats);
+                }
+                if (halfWidth > 0 && stats.count() > 1 && stats.halfWidth() <= halfWidth) {
+                    return;
+                }
+            }
+        } finally {
+            for (TrialTask task : pending) {
+                task.cancel(false);
+            }
+            spares.close();
+        }
+    }
+
+    /**
+     * Writes checkpoints of one run: magic, n, trials, seed, then the accumulator
+     */
+    private static class CheckpointWriter {
+
+        /**
+         * Checkpoint file
+         */
+        private final Path file;
+
+        /**
+         * Parameters identifying the run
+         */
+        private final int n, trials;
+
+        /**
+         * Seed identifying the run
+         */
+        private final long seed;
+
+        /**
+         * Minimum time between two saves
+         */
+        private final long intervalMillis;
+
+        /**
+         * Time of the last save
+         */
+        private long lastSave = System.currentTimeMillis();
+
+        CheckpointWriter(Path file, int n, int trials, long seed, long intervalMillis) {
+            this.file = file;
+            this.n = n;
+            this.trials = trials;
+            this.seed = seed;
+            this.intervalMillis = intervalMillis;
+        }
+
+        /**
+         * Save the stats if the interval elapsed since the last save
+         * @param stats stats to save
+         */
+        void saveIfDue(StatsAccumulator stats) {
+            long now = System.currentTimeMillis();
+            if (now - lastSave >= intervalMillis) {
+                try {
+                    save(stats);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                lastSave = now;
+            }
+        }
+
+        /**
+         * Save the stats, replacing the previous checkpoint atomically
+         * @param stats stats to save
+         * @throws IOException if the file can not be written
+         */
+        void save(StatsAccumulator stats) throws IOException {
+            Path absolute = file.toAbsolutePath();
+            Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+                out.writeInt(CHECKPOINT_MAGIC);
+                out.writeInt(n);
+                out.writeInt(trials);
+                out.writeLong(seed);
+                stats.writeTo(out);
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Off-heap grid and shuffled site ids of a running batch. A finished batch resets them and
+     * hands them to the next one instead of closing them, so a run maps one pair of files per
+     * concurrent batch: closed mappings are only released when the GC collects their buffers,
+     * which a small heap rarely does
+     */
+    private static final class OffHeapGrid implements Closeable {
+
+        /**
+         * The grid, reset between trials
+         */
+        final MappedPercolation grid;
 
-        results = new double[trials];
+        /**
+         * Site ids, shuffled in place by the trials of a batch
+         */
+        final MappedPermutation sites;
+
+        /**
+         * Pair a new grid with new identity site ids
+         * @param grid empty n-by-n grid, closed if the ids can not be created
+         * @param n grid size
+         */
+        OffHeapGrid(MappedPercolation grid, int n) {
+            this.grid = grid;
+            try {
+                this.sites = new MappedPermutation(n*n);
+            } catch (RuntimeException e) {
+                closeAfterFailure(grid, e);
+                throw e;
+            }
+        }
 
-        for (int i = 0; i < trials; i++) {
-            Percolation percolation = new Percolation(n);
-            while (!percolation.percolates()) {
-                int row = StdRandom.uniform(1, n+1);
-                int col = StdRandom.uniform(1, n+1);
-                percolation.open(row, col);
+        @Override
+        public void close() throws IOException {
+            try {
+                grid.close();
+            } finally {
+                sites.close();
             }
+        }
+    }
+
+    /**
+     * Off-heap grids of a run that no batch is using, closed at the end of the run. A batch
+     * still running then (cancelled by an early stop or a failure) closes its grid itself
+     */
+    private static final class SpareGrids {
+
+        /**
+         * Reset grids, ready for the next batch
+         */
+        private final ArrayDeque<OffHeapGrid> spares = new ArrayDeque<>();
 
-            int openSites = percolation.numberOfOpenSites();
-            int totalSites = n*n;
+        /**
+         * Set at the end of the run
+         */
+        private boolean closed;
 
-            double ratio = (double) openSites/totalSites;
+        /**
+         *
+         * @return a spare grid, or null if there is none
+         */
+        synchronized OffHeapGrid poll() {
+            return spares.pollFirst();
+        }
+
+        /**
+         * Keep a reset grid for the next batch, or close it if the run is over
+         * @param offHeap grid of a finished batch
+         */
+        void release(OffHeapGrid offHeap) {
+            synchronized (this) {
+                if (!closed) {
+                    spares.addLast(offHeap);
+                    return;
+                }
+            }
+            closeIfCloseable(offHeap);
+        }
 
-            results[i] = ratio;
+        /**
+         * Close the spare grids and the ones released from now on
+         */
+        void close() {
+            OffHeapGrid[] unused;
+            synchronized (this) {
+                closed = true;
+                unused = spares.toArray(new OffHeapGrid[0]);
+                spares.clear();
+            }
+            for (OffHeapGrid offHeap : unused) {
+                closeIfCloseable(offHeap);
+            }
+        }
+    }
+
+    /**
+     * Fork-join task that runs the batch of trials [from, to) and accumulates their results
+     */
+    private static class TrialTask extends RecursiveTask<StatsAccumulator> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Size of the grid
+         */
+        private final int n;
+
+        /**
+         * Seed of the whole run
+         */
+        private final long seed;
+
+        /**
+         * Creates the grid of each trial
+         */
+        private final IntFunction<? extends PercolationSystem> backend;
+
+        /**
+         * Off-heap grids shared by the batches of the run
+         */
+        private final SpareGrids spares;
+
+        /**
+         * Range of trials handled by this task (from inclusive, to exclusive)
+         */
+        private final int from, to;
+
+        TrialTask(int n, long seed, IntFunction<? extends PercolationSystem> backend,
+                  SpareGrids spares, int from, int to) {
+            this.n = n;
+            this.seed = seed;
+            this.backend = backend;
+            this.spares = spares;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected StatsAccumulator compute() {
+            // batch boundaries are fixed, so reusing the shuffled ids across the trials of
+            // a batch keeps runs reproducible whatever the pool size. Off-heap grids get
+            // off-heap ids too, which start as the same identity and so give the same results
+            StatsAccumulator results = new StatsAccumulator();
+            OffHeapGrid offHeap = spares.poll();
+            PercolationSystem percolation = offHeap == null ? backend.apply(n) : offHeap.grid;
+            if (offHeap == null && percolation instanceof MappedPercolation) {
+                offHeap = new OffHeapGrid((MappedPercolation) percolation, n);
+            }
+            if (offHeap != null) {
+                try {
+                    for (int i = from; i < to; i++) {
+                        results.add(runTrial(offHeap.grid, n, offHeap.sites, new SplitMix64(SplitMix64.streamSeed(seed, i))));
+                        offHeap.grid.reset();
+                    }
+                    offHeap.sites.reset();
+                } catch (RuntimeException | Error e) {
+                    closeAfterFailure(offHeap, e);
+                    throw e;
+                }
+                spares.release(offHeap);
+                return results;
+            }
+
+            int[] sites = new int[n*n];
+            for (int site = 0; site < sites.length; site++) {
+                sites[site] = site;
+            }
+            for (int i = from; i < to; i++) {
+                if (i > from) {
+                    percolation = backend.apply(n);
+                }
+                try {
+                    results.add(runTrial(percolation, n, sites, new SplitMix64(SplitMix64.streamSeed(seed, i))));
+                } finally {
+                    closeIfCloseable(percolation);
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Open sites in random order until the grid percolates. The order is an in-place
+     * Fisher-Yates shuffle of the site ids, drawn lazily one position at a time, so every
+     * draw opens a blocked site and the shuffle stops at the first percolation.
+     * @param percolation empty n-by-n grid
+     * @param n grid size
+     * @param sites permutation of the site ids 0..n*n-1, in any order, shuffled in place
+     * @param random random stream owned by this trial
+     * @return ratio openSites/totalSites when percolated
+     */
+    private static double runTrial(PercolationSystem percolation, int n, int[] sites, RandomSource random) {
+        for (int i = 0; !percolation.percolates(); i++) {
+            int j = random.nextInt(i, sites.length);
+            int site = sites[j];
+            sites[j] = sites[i];
+            sites[i] = site;
+            percolation.open(site / n + 1, site % n + 1);
+        }
+
+        int openSites = percolation.numberOfOpenSites();
+        int totalSites = n*n;
+
+        return (double) openSites/totalSites;
+    }
+
+    /**
+     * Same as runTrial over an int[], with the site ids kept off-heap
+     * @param percolation empty n-by-n grid
+     * @param n grid size
+     * @param sites permutation of the site ids 0..n*n-1, in any order, shuffled in place
+     * @param random random stream owned by this trial
+     * @return ratio openSites/totalSites when percolated
+     */
+    private static double runTrial(PercolationSystem percolation, int n, MappedPermutation sites,
+                                   RandomSource random) {
+        for (int i = 0; !percolation.percolates(); i++) {
+            int j = random.nextInt(i, sites.size());
+            sites.swap(i, j);
+            int site = sites.get(i);
+            percolation.open(site / n + 1, site % n + 1);
+        }
+
+        return (double) percolation.numberOfOpenSites() / ((double) n * n);
+    }
+
+    /**
+     * Release a grid holding files or other resources as soon as it is done with
+     * @param resource object to close if it is Closeable, may be null
+     */
+    private static void closeIfCloseable(Object resource) {
+        if (resource instanceof Closeable) {
+            try {
+                ((Closeable) resource).close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Close a resource after a failure, keeping the original exception
+     * @param resource resource to close
+     * @param failure exception being thrown, gets the close failure as suppressed
+     */
+    private static void closeAfterFailure(Closeable resource, Throwable failure) {
+        try {
+            resource.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
         }
     }
 
@@ -58,7 +560,7 @@ public class PercolationStats {
      * @return sample mean of percolation threshold
      */
     public double mean() {
-        return StdStats.mean(results);
+        return stats.mean();
     }
 
     /**
@@ -66,10 +568,7 @@ public class PercolationStats {
      * @return sample standard deviation of percolation threshold
      */
     public double stddev() {
-        if (trials == 1) {
-            return Double.NaN;
-        }
-        return StdStats.stddev(results);
+        return stats.stddev();
     }
 
     /**
@@ -77,7 +576,7 @@ public class PercolationStats {
      * @return low  endpoint of 95% confidence interval
      */
     public double confidenceLo() {
-        return mean() - (1.960 * stddev()/Math.sqrt(trials));
+        return stats.confidenceLo();
     }
 
     /**
@@ -85,20 +584,61 @@ public class PercolationStats {
      * @return  high endpoint of 95% confidence interval
      */
     public double confidenceHi() {
-        return mean() + (1.960 * stddev()/Math.sqrt(trials));
+        return stats.confidenceHi();
+    }
+
+    /**
+     *
+     * @return number of trials the stats are based on
+     */
+    public int numberOfTrials() {
+        return (int) stats.count();
+    }
+
+    /**
+     *
+     * @return copy of the accumulated results, to be saved or merged with other runs
+     */
+    public StatsAccumulator accumulator() {
+        return new StatsAccumulator(stats);
     }
 
     /**
      * Run trials iterations of percolation in an n sized grid and print the stats:
      * mean, stddev and 95% confidence interval
-     * @param args arg1: size of the grid, arg2: trials to run
+     * @param args arg1: size of the grid, arg2: trials to run, arg3 (optional): seed,
+     *             arg4 (optional): number of worker threads, arg5 (optional): uf, flat or mapped backend,
+     *             arg6 (optional): checkpoint file, saved every minute
+     * @throws IOException if the checkpoint can not be read or written
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
 
         int n = Integer.parseInt(args[0]);
         int trials = Integer.parseInt(args[1]);
 
-        PercolationStats ps = new PercolationStats(n, trials);
+        PercolationStats ps;
+        if (args.length > 3) {
+            IntFunction<? extends PercolationSystem> backend = Percolation::new;
+            if (args.length > 4 && "flat".equals(args[4])) {
+                backend = FlatPercolation::new;
+            } else if (args.length > 4 && "mapped".equals(args[4])) {
+                backend = MappedPercolation::new;
+            }
+            ForkJoinPool pool = new ForkJoinPool(Integer.parseInt(args[3]));
+            try {
+                if (args.length > 5) {
+                    ps = resumable(n, trials, Long.parseLong(args[2]), pool, backend, Paths.get(args[5]), 60000);
+                } else {
+                    ps = new PercolationStats(n, trials, Long.parseLong(args[2]), pool, backend);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        } else if (args.length > 2) {
+            ps = new PercolationStats(n, trials, Long.parseLong(args[2]));
+        } else {
+            ps = new PercolationStats(n, trials);
+        }
 
         System.out.println("mean                    = " + ps.mean());
         System.out.println("stddev                  = " + ps.stddev());
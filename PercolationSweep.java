@@ -0,0 +1,122 @@
+package week1;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs week1.PercolationStats over a grid of (n, trials) combinations inside one JVM, so the
+ * sweep pays JVM start up and JIT warm up once. Every combination gets a lightweight
+ * coordinator thread, the trials of all of them share one bounded fork-join pool of CPU
+ * workers. Results are printed as CSV or JSON lines as soon as each combination finishes.
+ * Each line is the same result as java week1.PercolationStats n trials seed for that combination.
+ *
+ * To execute: java week1.PercolationSweep ns trials [seed [threads [csv|json]]]
+ * Where ns and trials are comma separated lists, e.g. 64,128,256 100,1000
+ */
+public class PercolationSweep {
+
+    /**
+     * Run every (n, trials) combination and print one line per result, in completion order
+     * @param ns grid sizes
+     * @param trials trial counts
+     * @param seed seed of every combination
+     * @param pool CPU workers running the trials
+     * @param out destination of the result lines
+     * @param json true for JSON lines, false for CSV (with a header line)
+     * @throws InterruptedException if interrupted while waiting for the combinations
+     */
+    public static void sweep(int[] ns, int[] trials, long seed, ForkJoinPool pool, PrintStream out, boolean json)
+            throws InterruptedException {
+
+        if (!json) {
+            out.println("n,trials,mean,stddev,confidenceLo,confidenceHi,millis");
+        }
+
+        // coordinators only submit batches and wait for them, they do not need a CPU each
+        ExecutorService coordinators = Executors.newFixedThreadPool(Math.max(1, ns.length * trials.length));
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int n : ns) {
+                for (int t : trials) {
+                    runs.add(coordinators.submit(() -> {
+                        long start = System.nanoTime();
+                        PercolationStats stats = new PercolationStats(n, t, seed, pool, FlatPercolation::new);
+                        long millis = (System.nanoTime() - start) / 1000000;
+                        String line = json
+                                ? String.format(Locale.ROOT, "{\"n\": %d, \"trials\": %d, \"mean\": %s, \"stddev\": %s, "
+                                        + "\"confidenceLo\": %s, \"confidenceHi\": %s, \"millis\": %d}",
+                                        n, t, jsonNumber(stats.mean()), jsonNumber(stats.stddev()),
+                                        jsonNumber(stats.confidenceLo()), jsonNumber(stats.confidenceHi()), millis)
+                                : n + "," + t + "," + stats.mean() + "," + stats.stddev() + ","
+                                        + stats.confidenceLo() + "," + stats.confidenceHi() + "," + millis;
+                        synchronized (out) {
+                            out.println(line);
+                            out.flush();
+                        }
+                    }));
+                }
+            }
+            for (Future<?> run : runs) {
+                try {
+                    run.get();
+                } catch (ExecutionException e) {
+                    System.err.println("combination failed: " + e.getCause());
+                }
+            }
+        } finally {
+            coordinators.shutdownNow();
+        }
+    }
+
+    /**
+     * JSON has no NaN, stddev of a single trial is written as null
+     * @param value number to write
+     * @return JSON literal
+     */
+    private static String jsonNumber(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value);
+    }
+
+    /**
+     * Parse a comma separated list of integers
+     * @param list e.g. 64,128,256
+     * @return the integers
+     */
+    private static int[] parseList(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    /**
+     * Run the sweep described by the arguments
+     * @param args arg1: grid sizes, arg2: trial counts, arg3 (optional): seed,
+     *             arg4 (optional): CPU workers, default all processors, arg5 (optional): csv or json
+     * @throws InterruptedException if interrupted while waiting for the combinations
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int[] ns = parseList(args[0]);
+        int[] trials = parseList(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        boolean json = args.length > 4 && "json".equals(args[4]);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            sweep(ns, trials, seed, pool, System.out, json);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
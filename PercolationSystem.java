@@ -0,0 +1,59 @@
+package week1;
+
+/**
+ * Public API shared by the percolation backends, so week1.PercolationStats can pick one.
+ * Coordinates are 1-based: row and col go from 1 to n.
+ */
+public interface PercolationSystem {
+
+    /**
+     * Open site (row, col) if it is not open already
+     * @param row x-coordinate of the site to open
+     * @param col y-coordinate of the site to open
+     */
+    void open(int row, int col);
+
+    /**
+     * Open a batch of sites, site i being (rows[i], cols[i]). Backends may override this to
+     * validate the batch once and skip the per call overhead.
+     * @param rows x-coordinates of the sites to open
+     * @param cols y-coordinates of the sites to open, same length as rows
+     * @return does the system percolate after the batch
+     */
+    default boolean openAll(int[] rows, int[] cols) {
+        if (rows.length != cols.length)
+            throw new IllegalArgumentException();
+        for (int i = 0; i < rows.length; i++) {
+            open(rows[i], cols[i]);
+        }
+        return percolates();
+    }
+
+    /**
+     * Is site (row, col) open?
+     * @param row x-coordinate of the site to check
+     * @param col y-coordinate of the site to check
+     * @return boolean status of the site (open == true, closed ==false)
+     */
+    boolean isOpen(int row, int col);
+
+    /**
+     * Is site (row, col) full?
+     * @param row x-coordinate of the site to check
+     * @param col y-coordinate of the site to check
+     * @return boolean status of the site (full == true, not full ==false)
+     */
+    boolean isFull(int row, int col);
+
+    /**
+     *
+     * @return number of open sites
+     */
+    int numberOfOpenSites();
+
+    /**
+     * does the system percolate
+     * @return boolean answer if system percolates
+     */
+    boolean percolates();
+}
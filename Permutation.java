@@ -1,34 +1,310 @@
 package week2;
 
+import common.SplitMix64;
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 /**
  * Author: Vagner Planello
  * Date: 28/jun/2019
  *
+ * Streams the input through a ReservoirSampler, so only k strings are held in memory
+ * whatever the input size. With k == 0 the input is not read at all; with k at least the
+ * number of strings every string is printed, in random order.
+ * Pass --queue as the first parameter to load every string in a RandomizedQueue instead.
+ * When file names follow K, the files are read through TokenScanner instead of StdIn: the
+ * reservoir holds token offsets and only the k chosen tokens are ever decoded.
+ * With --threads or --weighted the files are split in shards sampled in parallel, each by a
+ * WeightedReservoir with its own stream, and the shard samples are merged in shard order
+ * (with a few shards per thread in flight, so memory stays O(threads * k));
+ * the output is sorted by descending key. Unweighted, files are cut in ranges of about 16 MB
+ * aligned on whitespace; weighted, the files hold item/weight token pairs and each file is
+ * one shard (items of weight 0 are never chosen). Shards do not depend on the number of
+ * threads, so a run with --seed prints the same sample whatever the thread count.
+ *
  * Command line parameters:
+ * [--queue] optional, use the whole-input RandomizedQueue
+ * [--threads T] optional, sample the files in shards over T threads
+ * [--weighted] optional, the files hold item/weight pairs
+ * [--seed S] optional, seed of the sharded sampling
  * K: integer number of elements to return
- * A series of strings to run the permutation
+ * [files]: optional, files whose tokens are sampled; without them, strings are read from StdIn
  */
 public class Permutation {
 
+    /**
+     * Bits of a token reference holding its offset, the file index goes in the bits above.
+     */
+    private static final int OFFSET_BITS = 47;
+
+    /**
+     * Size of the byte ranges large files are split in for the sharded sampling.
+     */
+    private static final long SHARD_BYTES = 1 << 24;
+
+    /**
+     * Shards kept in flight per pool worker, so workers do not wait for the in-order merge.
+     */
+    private static final int SHARDS_PER_WORKER = 4;
+
     /**
      *
-     * @param args first one covertible to integer, next ones treated as strings
+     * @param args first one covertible to integer, next ones treated as file names
+     * @throws IOException if a file can not be read
      */
-    public static void main(String[] args) {
-        int k = Integer.parseInt(args[0]);
+    public static void main(String[] args) throws IOException {
+        boolean queueMode = false;
+        boolean weighted = false;
+        int threads = 0;
+        Long seed = null;
+        int first = 0;
+        for (; first < args.length && args[first].startsWith("--"); first++) {
+            switch (args[first]) {
+                case "--queue":
+                    queueMode = true;
+                    break;
+                case "--weighted":
+                    weighted = true;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++first]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++first]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[first]);
+            }
+        }
+        int k = Integer.parseInt(args[first]);
+        boolean sharded = weighted || threads > 0 || seed != null;
+        if (sharded && (queueMode || args.length == first + 1)) {
+            throw new IllegalArgumentException("--threads, --weighted and --seed need files and no --queue");
+        }
 
-        RandomizedQueue<String> queue = new RandomizedQueue<String>();
+        if (k == 0) {
+            return;
+        }
+
+        if (!queueMode && args.length > first + 1) {
+            Path[] files = new Path[args.length - first - 1];
+            for (int i = 0; i < files.length; i++) {
+                files[i] = Paths.get(args[first + 1 + i]);
+            }
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+                if (sharded) {
+                    ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+                    try {
+                        sampleShards(k, files, weighted, seed == null ? SplitMix64.current().nextLong() : seed,
+                                pool, out);
+                    } finally {
+                        pool.shutdown();
+                    }
+                } else {
+                    sampleFiles(k, files, out);
+                }
+            }
+            return;
+        }
+
+        if (queueMode) {
+            RandomizedQueue<String> queue = new RandomizedQueue<String>();
+
+            while (!StdIn.isEmpty()) {
+                queue.enqueue(StdIn.readString());
+
+            }
+
+            for (int i = 0; i < k; i++) {
+                StdOut.println(queue.dequeue());
+            }
+            return;
+        }
+
+        ReservoirSampler<String> sampler = new ReservoirSampler<String>(k);
 
         while (!StdIn.isEmpty()) {
-            queue.enqueue(StdIn.readString());
+            sampler.offer(StdIn.readString());
+        }
+
+        for (String item : sampler) {
+            StdOut.println(item);
+        }
+    }
 
+    /**
+     * Write a uniform k-sample of the tokens of the files, one per line, in random order.
+     * @param k sample size
+     * @param files files to read
+     * @param out destination of the sample
+     * @throws IOException if a file can not be read or the output written
+     */
+    static void sampleFiles(int k, Path[] files, Writer out) throws IOException {
+        checkFiles(files);
+        ReservoirSampler<Long> sampler = new ReservoirSampler<Long>(k);
+        for (int f = 0; f < files.length; f++) {
+            try (TokenScanner scanner = new TokenScanner(files[f])) {
+                while (scanner.next()) {
+                    if (sampler.wantsNext()) {
+                        sampler.offer(((long) f << OFFSET_BITS) | scanner.offset());
+                    } else {
+                        sampler.skip();
+                    }
+                }
+            }
         }
 
-        for (int i = 0; i < k; i++) {
-            StdOut.println(queue.dequeue());
+        writeTokens(sampler, files, out);
+    }
+
+    /**
+     * Write a k-sample of the tokens of the files, sampled in shards on the pool, one per line
+     * by descending key. Unweighted it is uniform; weighted, the files hold item/weight pairs
+     * and items are drawn with probability proportional to their weight, without replacement.
+     * @param k sample size
+     * @param files files to read
+     * @param weighted whether the files hold item/weight pairs
+     * @param seed seed of the shard streams
+     * @param pool pool running the shards
+     * @param out destination of the sample
+     * @throws IOException if a file can not be read or the output written
+     */
+    static void sampleShards(int k, Path[] files, boolean weighted, long seed, ForkJoinPool pool, Writer out)
+            throws IOException {
+        checkFiles(files);
+        List<long[]> shards = new ArrayList<long[]>();
+        for (int f = 0; f < files.length; f++) {
+            long size = Files.size(files[f]);
+            long step = weighted ? Math.max(size, 1) : SHARD_BYTES;
+            for (long from = 0; from == 0 || from < size; from += step) {
+                shards.add(new long[] {f, from, from + step});
+            }
+        }
+
+        // shard i always draws from the same stream and shards merge in shard order, whatever
+        // the pool; at most SHARDS_PER_WORKER shards per worker wait for the merge
+        int inFlight = pool.getParallelism() * SHARDS_PER_WORKER;
+        ArrayDeque<ForkJoinTask<WeightedReservoir<Long>>> pending =
+                new ArrayDeque<ForkJoinTask<WeightedReservoir<Long>>>(inFlight);
+        WeightedReservoir<Long> sample = new WeightedReservoir<Long>(k, new SplitMix64(seed));
+        int next = 0;
+        try {
+            while (next < shards.size() || !pending.isEmpty()) {
+                while (next < shards.size() && pending.size() < inFlight) {
+                    long[] shard = shards.get(next);
+                    SplitMix64 random = new SplitMix64(SplitMix64.streamSeed(seed, next));
+                    pending.addLast(pool.submit(() -> {
+                        try {
+                            return sampleShard(k, files, shard, weighted, random);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+                    next++;
+                }
+                sample.merge(pending.removeFirst().join());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (ForkJoinTask<WeightedReservoir<Long>> task : pending) {
+                task.cancel(false);
+            }
+        }
+        writeTokens(sample, files, out);
+    }
+
+    /**
+     * Sample one shard: the tokens starting in a byte range of a file.
+     * @param k sample size
+     * @param files files to read
+     * @param shard file index, first byte and byte after the range
+     * @param weighted whether the file holds item/weight pairs
+     * @param random stream of the shard
+     * @return sample of the shard, holding token references
+     * @throws IOException if the file can not be read
+     */
+    private static WeightedReservoir<Long> sampleShard(int k, Path[] files, long[] shard, boolean weighted,
+                                                       SplitMix64 random) throws IOException {
+        int f = (int) shard[0];
+        WeightedReservoir<Long> reservoir = new WeightedReservoir<Long>(k, random);
+        try (TokenScanner scanner = new TokenScanner(files[f], shard[1], shard[2], TokenScanner.DEFAULT_WINDOW)) {
+            while (scanner.next()) {
+                long ref = ((long) f << OFFSET_BITS) | scanner.offset();
+                double weight = 1.0;
+                if (weighted) {
+                    if (!scanner.next()) {
+                        throw new IllegalArgumentException("Missing weight of the last item of " + files[f]);
+                    }
+                    weight = Double.parseDouble(scanner.token());
+                    if (weight == 0) {
+                        continue;
+                    }
+                }
+                double key = reservoir.key(weight);
+                if (reservoir.accepts(key)) {
+                    reservoir.add(ref, key);
+                }
+            }
+        }
+        return reservoir;
+    }
+
+    /**
+     * Fail if the files can not be told apart in a token reference.
+     * @param files files to read
+     * @throws IOException if a file size can not be read
+     */
+    private static void checkFiles(Path[] files) throws IOException {
+        if (files.length > 1 << (Long.SIZE - 1 - OFFSET_BITS)) {
+            throw new IllegalArgumentException("Too many files");
+        }
+        for (Path file : files) {
+            if (Files.size(file) >= 1L << OFFSET_BITS) {
+                throw new IllegalArgumentException("File too large: " + file);
+            }
+        }
+    }
+
+    /**
+     * Decode the referenced tokens and write them, one per line, in iteration order.
+     * @param refs token references (file index and offset)
+     * @param files files the references point in
+     * @param out destination of the tokens
+     * @throws IOException if a file can not be read or the output written
+     */
+    private static void writeTokens(Iterable<Long> refs, Path[] files, Writer out) throws IOException {
+        TokenScanner[] open = new TokenScanner[files.length];
+        try {
+            for (long ref : refs) {
+                int f = (int) (ref >>> OFFSET_BITS);
+                if (open[f] == null) {
+                    open[f] = new TokenScanner(files[f]);
+                }
+                out.write(open[f].tokenAt(ref & ((1L << OFFSET_BITS) - 1)));
+                out.write(System.lineSeparator());
+            }
+        } finally {
+            for (TokenScanner scanner : open) {
+                if (scanner != null) {
+                    scanner.close();
+                }
+            }
         }
     }
 
@@ -0,0 +1,85 @@
+package common;
+
+/**
+ * Source of random numbers owned by one user (a queue, a trial, a thread), used instead of
+ * the global edu.princeton.cs.algs4.StdRandom so concurrent users do not share state and
+ * every stream can be seeded and reproduced on its own. Implementations are not thread-safe,
+ * give each thread its own instance (see split() and common.SplitMix64.current()).
+ */
+public interface RandomSource {
+
+    /**
+     *
+     * @return uniformly distributed 64 bits
+     */
+    long nextLong();
+
+    /**
+     * New independent source, seeded from this one
+     * @return the new source
+     */
+    RandomSource split();
+
+    /**
+     *
+     * @return uniformly distributed 32 bits
+     */
+    default int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * Uniform integer in [0, bound), without modulo bias
+     * @param bound exclusive upper bound, positive
+     * @return random integer
+     */
+    default int nextInt(int bound) {
+        if (bound <= 0)
+            throw new IllegalArgumentException();
+        int r = nextInt() >>> 1;
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return r & m;
+        }
+        for (int u = r; u - (r = u % bound) + m < 0; u = nextInt() >>> 1) {
+            // reject the values of the incomplete last range
+        }
+        return r;
+    }
+
+    /**
+     * Uniform integer in [origin, bound)
+     * @param origin inclusive lower bound
+     * @param bound exclusive upper bound, greater than origin
+     * @return random integer
+     */
+    default int nextInt(int origin, int bound) {
+        if (origin >= bound)
+            throw new IllegalArgumentException();
+        int range = bound - origin;
+        if (range > 0) {
+            return origin + nextInt(range);
+        }
+        int r;
+        do {
+            r = nextInt();
+        } while (r < origin || r >= bound);
+        return r;
+    }
+
+    /**
+     *
+     * @return uniform double in [0, 1)
+     */
+    default double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     *
+     * @return fair coin flip
+     */
+    default boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+}
@@ -1,7 +1,10 @@
 package week2;
 
-import edu.princeton.cs.algs4.StdRandom;
+import common.RandomSource;
+import common.SplitMix64;
 
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -9,35 +12,84 @@ import java.util.NoSuchElementException;
  * Author: Vagner Planello
  * Date: 28/jun/2019
  *
+ * Backed by a resizable array: dequeue swaps the chosen item with the last one, so dequeue
+ * and sample are uniform and O(1), and no node is allocated per item.
+ *
  * No parameter required for running in command line (Unit testing only)
  */
 public class RandomizedQueue<Item> implements Iterable<Item> {
 
     /**
-     * Inner representation of the Queue
+     * Smallest capacity of the array.
+     */
+    private static final int MIN_CAPACITY = 8;
+
+    /**
+     * Inner representation of the Queue: items in positions 0..size-1, in no particular order
+     */
+    private Item[] items;
+
+    /**
+     * Number of items in the queue
+     */
+    private int size;
+
+    /**
+     * Random stream owned by this queue (and its iterators)
      */
-    private final Deque<Item> deque;
+    private final RandomSource random;
 
     /**
-     * Random Queue iterator implementation
+     * Structural modifications (enqueue/dequeue) so far, checked by the iterators
+     */
+    private int modCount;
+
+    /**
+     * Random Queue iterator implementation: a Fisher-Yates shuffle run one step per next(),
+     * over virtual positions 0..n-1. Only the displaced positions are remembered, in a small
+     * open-addressing map, so setup is O(1) and taking k items costs O(k) time and memory.
      */
     private class RandomQueueIterator implements Iterator<Item> {
 
         /**
-         * Inner representation fo the queue for iteration
+         * Marks an empty slot of the map (positions are never negative)
          */
-       private final Deque<Item> internalQueue;
+        private static final int EMPTY = -1;
 
         /**
-         * Instantiate inner queue and fills it
+         * Own random stream, so iterators are independent from each other and from the queue
          */
-       public RandomQueueIterator() {
-        internalQueue = new Deque<>();
-        for (Item item: deque) {
-            internalQueue.addFirst(item);
-        }
+        private final RandomSource stream = random.split();
 
-       }
+        /**
+         * Number of items when the iterator was created
+         */
+        private final int n = size;
+
+        /**
+         * Expected modCount, to detect a queue modified during iteration
+         */
+        private final int expectedModCount = modCount;
+
+        /**
+         * Displaced positions (keys) and the position each one now holds (values)
+         */
+        private int[] keys = new int[0];
+
+        /**
+         * Value of each key in the map
+         */
+        private int[] values = new int[0];
+
+        /**
+         * Number of keys in the map
+         */
+        private int mapped;
+
+        /**
+         * Position of the next element
+         */
+        private int current = 0;
 
         /**
          * Checks if the Iterable has a next element.
@@ -45,27 +97,30 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
          */
         @Override
         public boolean hasNext() {
-            return !internalQueue.isEmpty();
+            return current < n;
         }
 
         /**
-         * Next element of the iterable
+         * Next element of the iterable: swaps a uniform position of current..n-1 into current
          * @return element
          */
         @Override
         public Item next() {
 
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
 
-            int coin = StdRandom.uniform(0, 2);
-            if (coin == 0) {
-                return internalQueue.removeFirst();
-            } else {
-                return internalQueue.removeLast();
+            int j = current + stream.nextInt(n - current);
+            int picked = get(j);
+            if (j != current) {
+                put(j, get(current));
             }
-
+            current++;
+            return items[picked];
         }
 
         /**
@@ -75,13 +130,98 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         public void remove() {
             throw new UnsupportedOperationException();
         }
+
+        /**
+         * Position currently held at the given virtual position
+         * @param key virtual position
+         * @return the mapped position, or the key itself if never displaced
+         */
+        private int get(int key) {
+            if (mapped == 0) {
+                return key;
+            }
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return key;
+        }
+
+        /**
+         * Record that the given virtual position now holds another position
+         * @param key virtual position
+         * @param value position it holds
+         */
+        private void put(int key, int value) {
+            if (2 * (mapped + 1) > keys.length) {
+                rehash(Math.max(8, keys.length * 2));
+            }
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                keys[i] = key;
+                mapped++;
+            }
+            values[i] = value;
+        }
+
+        /**
+         * Move the map to tables of the given (power of two) capacity
+         * @param capacity new capacity
+         */
+        private void rehash(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            int mask = capacity - 1;
+            for (int k = 0; k < oldKeys.length; k++) {
+                if (oldKeys[k] != EMPTY) {
+                    int i = hash(oldKeys[k]) & mask;
+                    while (keys[i] != EMPTY) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[k];
+                    values[i] = oldValues[k];
+                }
+            }
+        }
+
+        /**
+         * Spread consecutive positions over the table (Fibonacci hashing)
+         * @param key virtual position
+         * @return hash code
+         */
+        private int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
     }
 
     /**
-     * Construct an empty randomized queue.
+     * Construct an empty randomized queue, with a stream split from the calling thread's one.
      */
     public RandomizedQueue() {
-        deque = new Deque<>();
+        this(SplitMix64.current().split());
+    }
+
+    /**
+     * Construct an empty randomized queue drawing from the given random stream.
+     * @param random random stream, owned by the queue from now on (seed it to reproduce runs)
+     */
+    @SuppressWarnings("unchecked")
+    public RandomizedQueue(RandomSource random) {
+        if (random == null) {
+            throw new IllegalArgumentException();
+        }
+        items = (Item[]) new Object[MIN_CAPACITY];
+        this.random = random;
     }
 
     /**
@@ -89,7 +229,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
      * @return boolean evaluation
      */
     public boolean isEmpty() {
-        return deque.isEmpty();
+        return size == 0;
     }
 
     /**
@@ -97,7 +237,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
      * @return size of the queue
      */
     public int size() {
-        return deque.size();
+        return size;
     }
 
     /**
@@ -105,25 +245,33 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
      * @param item item to be added
      */
     public void enqueue(Item item) {
-        int coin = StdRandom.uniform(0, 2);
-        if (coin == 0) {
-            deque.addFirst(item);
-        } else {
-            deque.addLast(item);
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        if (size == items.length) {
+            resize(items.length * 2);
         }
+        items[size++] = item;
+        modCount++;
     }
 
     /**
-     * Remove and return a random item.
+     * Remove and return a random item: every item is equally likely, the last item fills the hole.
      * @return random item from the queue
      */
     public Item dequeue() {
-        int coin = StdRandom.uniform(0, 2);
-        if (coin == 0) {
-            return deque.removeFirst();
-        } else {
-            return deque.removeLast();
+        if (isEmpty()) {
+            throw new NoSuchElementException();
         }
+        int index = random.nextInt(size);
+        Item item = items[index];
+        items[index] = items[--size];
+        items[size] = null;
+        modCount++;
+        if (items.length > MIN_CAPACITY && size <= items.length / 4) {
+            resize(items.length / 2);
+        }
+        return item;
     }
 
     /**
@@ -131,29 +279,31 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
      * @return random item to inspection
      */
     public Item sample() {
-        int coin = StdRandom.uniform(0, 2);
-        if (coin == 0) {
-            Item item = deque.removeFirst();
-            deque.addLast(item);
-
-            return item;
-        } else {
-            Item item = deque.removeLast();
-            deque.addFirst(item);
-
-
-            return item;
+        if (isEmpty()) {
+            throw new NoSuchElementException();
         }
+        return items[random.nextInt(size)];
     }
 
     /**
-     * Return an independent iterator over items in random order
+     * Return an independent iterator over items in random order, drawn lazily (O(1) setup)
      * @return iterator
      */
     public Iterator<Item> iterator() {
         return new RandomQueueIterator();
     }
 
+    /**
+     * Move the items to an array of the given capacity
+     * @param capacity new capacity, not smaller than size
+     */
+    private void resize(int capacity) {
+        @SuppressWarnings("unchecked")
+        Item[] resized = (Item[]) new Object[capacity];
+        System.arraycopy(items, 0, resized, 0, size);
+        items = resized;
+    }
+
     /**
      * unit testing (required).
      * @param args no arqs
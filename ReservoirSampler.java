@@ -0,0 +1,240 @@
+package week2;
+
+import common.RandomSource;
+import common.SplitMix64;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Uniform random sample of k items from a stream of unknown length N, in one pass and
+ * O(min(k, N)) memory (reservoir sampling, Li's Algorithm L; the reservoir grows by doubling
+ * up to k). After the reservoir is full, the index of
+ * the next item to keep is drawn directly, so the skipped items cost one counter increment
+ * each and callers holding expensive items can check wantsNext() and skip() them unbuilt.
+ *
+ * No parameters required to run from command line (Unit Testing only)
+ */
+public class ReservoirSampler<Item> implements Iterable<Item> {
+
+    /**
+     * Sample size.
+     */
+    private final int k;
+
+    /**
+     * Initial capacity of the reservoir, grown by doubling up to k.
+     */
+    private static final int MIN_CAPACITY = 8;
+
+    /**
+     * Kept items, the first min(k, seen) positions are used.
+     */
+    private Item[] reservoir;
+
+    /**
+     * Random stream owned by this sampler.
+     */
+    private final RandomSource random;
+
+    /**
+     * Number of items offered (kept or skipped) so far.
+     */
+    private long seen;
+
+    /**
+     * Index of the next item that will replace one in the reservoir.
+     */
+    private long nextKept;
+
+    /**
+     * Algorithm L running weight: the largest of the k smallest keys seen so far.
+     */
+    private double w;
+
+    /**
+     * Construct an empty sampler, with a stream split from the calling thread's one.
+     * @param k sample size, not negative
+     */
+    public ReservoirSampler(int k) {
+        this(k, SplitMix64.current().split());
+    }
+
+    /**
+     * Construct an empty sampler drawing from the given random stream.
+     * @param k sample size, not negative
+     * @param random random stream, owned by the sampler from now on
+     */
+    @SuppressWarnings("unchecked")
+    public ReservoirSampler(int k, RandomSource random) {
+        if (k < 0 || random == null) {
+            throw new IllegalArgumentException();
+        }
+        this.k = k;
+        this.reservoir = (Item[]) new Object[Math.min(k, MIN_CAPACITY)];
+        this.random = random;
+        this.nextKept = k == 0 ? Long.MAX_VALUE : k;
+        this.w = 1.0;
+    }
+
+    /**
+     * Will the next offered item be kept?
+     * @return boolean evaluation
+     */
+    public boolean wantsNext() {
+        return seen < k || seen == nextKept;
+    }
+
+    /**
+     * Offer the next item of the stream.
+     * @param item item, not null
+     */
+    public void offer(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        if (seen < k) {
+            if (seen == reservoir.length) {
+                reservoir = Arrays.copyOf(reservoir, (int) Math.min(k, 2L * reservoir.length));
+            }
+            reservoir[(int) seen] = item;
+            if (seen == k - 1) {
+                advance(seen);
+            }
+        } else if (seen == nextKept) {
+            reservoir[random.nextInt(k)] = item;
+            advance(seen);
+        }
+        seen++;
+    }
+
+    /**
+     * Count the next item of the stream without providing it, it must not be wanted.
+     */
+    public void skip() {
+        if (wantsNext()) {
+            throw new IllegalStateException();
+        }
+        seen++;
+    }
+
+    /**
+     * Number of items offered so far.
+     * @return stream length
+     */
+    public long seen() {
+        return seen;
+    }
+
+    /**
+     * Number of items in the sample, min(k, seen).
+     * @return sample size
+     */
+    public int size() {
+        return (int) Math.min(k, seen);
+    }
+
+    /**
+     * Iterator over the sample in random order (the reservoir itself keeps arrival order for
+     * its first items, so it is shuffled on the way out).
+     * @return iterator
+     */
+    @Override
+    public Iterator<Item> iterator() {
+        int n = size();
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Item swap = reservoir[i];
+            reservoir[i] = reservoir[j];
+            reservoir[j] = swap;
+        }
+        return new Iterator<Item>() {
+
+            /**
+             * Position of the next element
+             */
+            private int current = 0;
+
+            /**
+             * Checks if the Iterable has a next element.
+             * @return boolean evaluation
+             */
+            @Override
+            public boolean hasNext() {
+                return current < n;
+            }
+
+            /**
+             * Next element of the iterable
+             * @return element
+             */
+            @Override
+            public Item next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return reservoir[current++];
+            }
+        };
+    }
+
+    /**
+     * Draw the index of the next kept item after the given one.
+     * @param index index of the item just kept
+     */
+    private void advance(long index) {
+        w *= Math.exp(Math.log(uniform()) / k);
+        double gap = Math.floor(Math.log(uniform()) / Math.log1p(-w));
+        nextKept = gap >= Long.MAX_VALUE - index ? Long.MAX_VALUE : index + 1 + (long) gap;
+    }
+
+    /**
+     * Uniform double in (0, 1], so its logarithm is finite.
+     * @return random double
+     */
+    private double uniform() {
+        return 1.0 - random.nextDouble();
+    }
+
+    /**
+     * unit testing (required).
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        int n = 10;
+        int k = 3;
+        int trials = 200_000;
+        int[] counts = new int[n];
+        for (int t = 0; t < trials; t++) {
+            ReservoirSampler<Integer> sampler = new ReservoirSampler<>(k, new SplitMix64(t));
+            for (int i = 0; i < n; i++) {
+                sampler.offer(i);
+            }
+            for (int item : sampler) {
+                counts[item]++;
+            }
+        }
+        StdOut.println("Inclusion frequency (expected " + (double) k / n + ")");
+        for (int i = 0; i < n; i++) {
+            StdOut.println(String.format(Locale.ROOT, "%d %.4f", i, (double) counts[i] / trials));
+        }
+
+        ReservoirSampler<Integer> big = new ReservoirSampler<>(5);
+        long start = System.nanoTime();
+        for (int i = 0; i < 100_000_000; i++) {
+            if (big.wantsNext()) {
+                big.offer(i);
+            } else {
+                big.skip();
+            }
+        }
+        StdOut.print(String.format(Locale.ROOT, "5 of %d in %.1f ms:", big.seen(), (System.nanoTime() - start) / 1e6));
+        for (int item : big) {
+            StdOut.print(" " + item);
+        }
+        StdOut.println();
+    }
+}
@@ -0,0 +1,82 @@
+package common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SplitMix64 generator (the algorithm behind java.util.SplittableRandom): a 64-bit counter
+ * advanced by the golden gamma and passed through a mixing function. One long of state, no
+ * allocation and no synchronization per call. Each thread can get its own stream through
+ * current(), seeded once per thread from a lock-free global seeder.
+ */
+public final class SplitMix64 implements RandomSource {
+
+    /**
+     * Golden ratio increment of the counter
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Seeds the per-thread streams, advanced atomically once per new thread
+     */
+    private static final AtomicLong SEEDER = new AtomicLong(mix64(System.nanoTime()) ^ mix64(System.currentTimeMillis()));
+
+    /**
+     * Stream of each thread
+     */
+    private static final ThreadLocal<SplitMix64> CURRENT =
+            ThreadLocal.withInitial(() -> new SplitMix64(mix64(SEEDER.addAndGet(GOLDEN_GAMMA))));
+
+    /**
+     * Counter
+     */
+    private long state;
+
+    /**
+     * Create a generator with a fixed seed
+     * @param seed seed, equal seeds give equal streams
+     */
+    public SplitMix64(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Stream owned by the calling thread, never shared with other threads
+     * @return the thread's generator
+     */
+    public static SplitMix64 current() {
+        return CURRENT.get();
+    }
+
+    @Override
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix64(state);
+    }
+
+    @Override
+    public SplitMix64 split() {
+        return new SplitMix64(mix64(nextLong()));
+    }
+
+    /**
+     * Seed of the stream with the given index among the streams of a seeded run, e.g. one per
+     * trial or per input shard, so the streams do not depend on which thread draws from them
+     * @param seed seed of the whole run
+     * @param index stream index, not negative
+     * @return seed of the stream (mix64 of seed + (index + 1) * golden gamma)
+     */
+    public static long streamSeed(long seed, long index) {
+        return mix64(seed + (index + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Stafford's variant 13 of the MurmurHash3 finalizer, a bijective 64-bit mixer
+     * @param z value to mix
+     * @return mixed value
+     */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
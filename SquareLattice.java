@@ -0,0 +1,63 @@
+package week1;
+
+/**
+ * Square lattice with 4-neighbour (von Neumann) connectivity, the grid of week1.Percolation.
+ * Sites are numbered row by row, row 0 is the top and row n-1 the bottom.
+ */
+public class SquareLattice implements Lattice {
+
+    /**
+     * Size of the lattice.
+     */
+    private final int n;
+
+    /**
+     * Create an n-by-n lattice
+     * @param n lattice size
+     */
+    public SquareLattice(int n) {
+        if (n <= 0 || (long) n * n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException();
+        this.n = n;
+    }
+
+    @Override
+    public int sites() {
+        return n * n;
+    }
+
+    @Override
+    public int maxDegree() {
+        return 4;
+    }
+
+    @Override
+    public int neighbours(int site, int[] out) {
+        int row = site / n;
+        int col = site - row * n;
+        int count = 0;
+        if (row > 0) {
+            out[count++] = site - n;
+        }
+        if (row < n - 1) {
+            out[count++] = site + n;
+        }
+        if (col > 0) {
+            out[count++] = site - 1;
+        }
+        if (col < n - 1) {
+            out[count++] = site + 1;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isTop(int site) {
+        return site < n;
+    }
+
+    @Override
+    public boolean isBottom(int site) {
+        return site >= (n - 1) * n;
+    }
+}
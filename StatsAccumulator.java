@@ -0,0 +1,227 @@
+package week1;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Streaming mean/variance accumulator in constant memory: Welford's update for single values
+ * and Chan's formula to merge two accumulators, so shards computed by different threads or
+ * JVMs can be combined into one result. The state (count, mean, M2) can be written to and
+ * read back from a binary stream for checkpoints.
+ *
+ * To execute: java week1.StatsAccumulator shard1 [shard2 ...]
+ * Merges the accumulators saved in the given files and prints mean, stddev and 95% interval.
+ * A shard is a file written by writeTo or a checkpoint of week1.PercolationStats, e.g. from
+ * java week1.PercolationStats n trials seed threads backend shard1 on each machine. Shards
+ * must use different seeds, otherwise they repeat the same trials and the merge counts them
+ * twice; checkpoints with the same seed or of different grid sizes are rejected.
+ */
+public class StatsAccumulator {
+
+    /**
+     * Marker written before the state, to reject files that are not accumulators
+     */
+    private static final int MAGIC = 0x57454c46;
+
+    /**
+     * number of values added
+     */
+    private long count;
+
+    /**
+     * running mean of the values
+     */
+    private double mean;
+
+    /**
+     * running sum of squared differences from the mean
+     */
+    private double m2;
+
+    /**
+     * Create an empty accumulator
+     */
+    public StatsAccumulator() {
+    }
+
+    /**
+     * Create a copy of another accumulator
+     * @param other accumulator to copy
+     */
+    public StatsAccumulator(StatsAccumulator other) {
+        this.count = other.count;
+        this.mean = other.mean;
+        this.m2 = other.m2;
+    }
+
+    /**
+     * Add one value (Welford)
+     * @param value value to add
+     */
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+
+    /**
+     * Add all the values of another accumulator (Chan et al.), the other one is not modified
+     * @param other accumulator to merge into this one
+     */
+    public void merge(StatsAccumulator other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+    }
+
+    /**
+     *
+     * @return number of values added
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     *
+     * @return sample mean, NaN when empty
+     */
+    public double mean() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        return mean;
+    }
+
+    /**
+     *
+     * @return sample variance, NaN with less than two values
+     */
+    public double variance() {
+        if (count < 2) {
+            return Double.NaN;
+        }
+        return m2 / (count - 1);
+    }
+
+    /**
+     *
+     * @return sample standard deviation, NaN with less than two values
+     */
+    public double stddev() {
+        return Math.sqrt(variance());
+    }
+
+    /**
+     *
+     * @return half width of the 95% confidence interval of the mean
+     */
+    public double halfWidth() {
+        return 1.960 * stddev() / Math.sqrt(count);
+    }
+
+    /**
+     *
+     * @return low  endpoint of 95% confidence interval
+     */
+    public double confidenceLo() {
+        return mean() - halfWidth();
+    }
+
+    /**
+     *
+     * @return  high endpoint of 95% confidence interval
+     */
+    public double confidenceHi() {
+        return mean() + halfWidth();
+    }
+
+    /**
+     * Write the state of the accumulator
+     * @param out destination stream
+     * @throws IOException if the stream fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeLong(count);
+        out.writeDouble(mean);
+        out.writeDouble(m2);
+    }
+
+    /**
+     * Read an accumulator written by writeTo
+     * @param in source stream
+     * @return accumulator with the saved state
+     * @throws IOException if the stream fails or does not hold an accumulator
+     */
+    public static StatsAccumulator readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a statistics accumulator");
+        }
+        StatsAccumulator stats = new StatsAccumulator();
+        stats.count = in.readLong();
+        stats.mean = in.readDouble();
+        stats.m2 = in.readDouble();
+        if (stats.count < 0) {
+            throw new IOException("corrupted statistics accumulator");
+        }
+        return stats;
+    }
+
+    /**
+     * Merge the accumulators saved in the given files and print the combined stats
+     * @param args files written by writeTo or PercolationStats checkpoints, with different seeds
+     * @throws IOException if a file can not be read, or checkpoints repeat a seed or mix grid sizes
+     */
+    public static void main(String[] args) throws IOException {
+
+        StatsAccumulator total = new StatsAccumulator();
+        Set<Long> seeds = new HashSet<>();
+        int gridSize = 0;
+        for (String file : args) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(file))))) {
+                in.mark(4);
+                if (in.readInt() == PercolationStats.CHECKPOINT_MAGIC) {
+                    // skip the header identifying the run: n, trials, seed
+                    int n = in.readInt();
+                    in.readInt();
+                    long seed = in.readLong();
+                    if (gridSize != 0 && n != gridSize) {
+                        throw new IOException(file + ": grid size " + n + ", other shards use " + gridSize);
+                    }
+                    if (!seeds.add(seed)) {
+                        throw new IOException(file + ": seed " + seed + " already used by another shard");
+                    }
+                    gridSize = n;
+                } else {
+                    in.reset();
+                }
+                total.merge(readFrom(in));
+            }
+        }
+
+        System.out.println("trials                  = " + total.count());
+        System.out.println("mean                    = " + total.mean());
+        System.out.println("stddev                  = " + total.stddev());
+        System.out.println("95% confidence interval = [" + total.confidenceLo() + ", " + total.confidenceHi() + "]");
+    }
+}
@@ -0,0 +1,377 @@
+package week2;
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Whitespace-delimited tokens of a file, scanned byte by byte over read-only memory mapped
+ * windows of the file (so files larger than 2 GB work, and only a window is mapped at a time).
+ * A token is reported as its byte offset and length in the file; no String is built until
+ * tokenAt(offset) is asked for it, which is how Permutation materializes only the k chosen
+ * tokens. A token crossing a window boundary just continues in the next window.
+ * A scanner can also cover a byte range of the file, to split a large file among threads:
+ * it reports the tokens starting in the range, a token cut by the start of the range belongs
+ * to the previous range and one cut by its end is read to its end, so ranges that tile the
+ * file report every token exactly once.
+ * Whitespace is ASCII (space, tab, line feed, vertical tab, form feed, carriage return);
+ * text is decoded as UTF-8.
+ *
+ * Command line parameters (Unit Testing only):
+ * [file]: optional, prints the token count of the file; without it a self test runs
+ */
+public class TokenScanner implements Closeable {
+
+    /**
+     * Default size of a mapped window, in bytes.
+     */
+    public static final int DEFAULT_WINDOW = 1 << 26;
+
+    /**
+     * Bytes read at a time when materializing a token.
+     */
+    private static final int READ_CHUNK = 256;
+
+    /**
+     * Channel of the scanned file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Size of the file.
+     */
+    private final long fileSize;
+
+    /**
+     * Size of a mapped window, in bytes.
+     */
+    private final int window;
+
+    /**
+     * File offset where the scanned range ends: no token starts at or after it.
+     */
+    private final long rangeEnd;
+
+    /**
+     * Currently mapped window.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * File offset of the first byte of the window.
+     */
+    private long base;
+
+    /**
+     * File offset of the current token, -1 before the first one.
+     */
+    private long tokenOffset = -1;
+
+    /**
+     * Length in bytes of the current token.
+     */
+    private int tokenLength;
+
+    /**
+     * Open a scanner over the file with the default window.
+     * @param file file to scan
+     * @throws IOException if the file can not be opened or mapped
+     */
+    public TokenScanner(Path file) throws IOException {
+        this(file, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Open a scanner over the file.
+     * @param file file to scan
+     * @param window size of a mapped window in bytes, positive
+     * @throws IOException if the file can not be opened or mapped
+     */
+    public TokenScanner(Path file, int window) throws IOException {
+        this(file, 0, Long.MAX_VALUE, window);
+    }
+
+    /**
+     * Open a scanner over the tokens starting in a byte range of the file.
+     * @param file file to scan
+     * @param from first byte of the range
+     * @param to byte after the range (clamped to the file size)
+     * @param window size of a mapped window in bytes, positive
+     * @throws IOException if the file can not be opened or mapped
+     */
+    public TokenScanner(Path file, long from, long to, int window) throws IOException {
+        if (file == null || from < 0 || to < from || window <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.rangeEnd = Math.min(to, fileSize);
+        this.window = window;
+        if (from == 0 || from >= fileSize) {
+            map(Math.min(from, fileSize));
+        } else {
+            // look at the byte before the range: if it is part of a token, skip the rest of it
+            map(from - 1);
+            boolean cut = !isWhitespace(buffer.get(0));
+            buffer.position(1);
+            while (cut) {
+                if (!buffer.hasRemaining()) {
+                    if (!map(base + buffer.limit())) {
+                        break;
+                    }
+                } else if (isWhitespace(buffer.get(buffer.position()))) {
+                    break;
+                } else {
+                    buffer.position(buffer.position() + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Advance to the next token.
+     * @return false if there is no more token
+     * @throws IOException if a window can not be mapped
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (base + buffer.position() >= rangeEnd) {
+                return false;
+            } else if (!buffer.hasRemaining()) {
+                if (!map(base + buffer.limit())) {
+                    return false;
+                }
+            } else if (isWhitespace(buffer.get(buffer.position()))) {
+                buffer.position(buffer.position() + 1);
+            } else {
+                break;
+            }
+        }
+        tokenOffset = base + buffer.position();
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                if (!map(base + buffer.limit())) {
+                    break;
+                }
+            } else if (isWhitespace(buffer.get(buffer.position()))) {
+                break;
+            } else {
+                buffer.position(buffer.position() + 1);
+            }
+        }
+        long length = base + buffer.position() - tokenOffset;
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Token at " + tokenOffset + " is longer than 2 GB");
+        }
+        tokenLength = (int) length;
+        return true;
+    }
+
+    /**
+     * File offset of the current token.
+     * @return offset in bytes
+     */
+    public long offset() {
+        checkToken();
+        return tokenOffset;
+    }
+
+    /**
+     * Length of the current token.
+     * @return length in bytes
+     */
+    public int length() {
+        checkToken();
+        return tokenLength;
+    }
+
+    /**
+     * The current token as a String.
+     * @return decoded token
+     * @throws IOException if the file can not be read
+     */
+    public String token() throws IOException {
+        checkToken();
+        return read(tokenOffset, tokenLength);
+    }
+
+    /**
+     * The token starting at the given offset (as returned by offset()) as a String.
+     * @param offset file offset of the first byte of a token
+     * @return decoded token
+     * @throws IOException if the file can not be read
+     */
+    public String tokenAt(long offset) throws IOException {
+        if (offset < 0 || offset >= fileSize) {
+            throw new IllegalArgumentException();
+        }
+        ByteBuffer chunk = ByteBuffer.allocate(READ_CHUNK);
+        byte[] bytes = new byte[READ_CHUNK];
+        int length = 0;
+        for (long position = offset; position < fileSize; ) {
+            chunk.clear();
+            int read = channel.read(chunk, position);
+            if (read <= 0) {
+                break;
+            }
+            int end = 0;
+            while (end < read && !isWhitespace(chunk.get(end))) {
+                end++;
+            }
+            if (length + end > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + end));
+            }
+            chunk.position(0);
+            chunk.get(bytes, length, end);
+            length += end;
+            if (end < read) {
+                break;
+            }
+            position += read;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Size of the scanned file.
+     * @return size in bytes
+     */
+    public long fileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Close the file (mapped windows are released by the garbage collector).
+     * @throws IOException if the channel fails to close
+     */
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        channel.close();
+    }
+
+    /**
+     * Read length bytes from offset and decode them.
+     * @param offset file offset
+     * @param length number of bytes
+     * @return decoded text
+     * @throws IOException if the file can not be read
+     */
+    private String read(long offset, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, offset + bytes.position()) < 0) {
+                throw new IOException("File truncated while reading token at " + offset);
+            }
+        }
+        return new String(bytes.array(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Map the window starting at the given file offset.
+     * @param from file offset
+     * @return false if from is at or past the end of the file (nothing mapped)
+     * @throws IOException if the window can not be mapped
+     */
+    private boolean map(long from) throws IOException {
+        if (from >= fileSize && buffer != null) {
+            return false;
+        }
+        base = from;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(window, fileSize - from));
+        return true;
+    }
+
+    /**
+     * Fail if next() did not report a token yet.
+     */
+    private void checkToken() {
+        if (tokenOffset < 0) {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Is the byte an ASCII whitespace?
+     * @param b byte to check
+     * @return boolean evaluation
+     */
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r');
+    }
+
+    /**
+     * unit testing (required).
+     * @param args optional file to count the tokens of
+     * @throws IOException if a file can not be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            long start = System.nanoTime();
+            long count = 0;
+            try (TokenScanner scanner = new TokenScanner(Paths.get(args[0]))) {
+                while (scanner.next()) {
+                    count++;
+                }
+            }
+            StdOut.println(count + " tokens in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return;
+        }
+
+        String text = "  to be\tor not\r\n  to-be that is the quest\u00e3o  \n\nsupercalifragilistic x";
+        String[] expected = text.trim().split("\\s+");
+        Path file = Files.createTempFile("tokens", ".txt");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            for (int window : new int[] {1, 3, 7, DEFAULT_WINDOW}) {
+                try (TokenScanner scanner = new TokenScanner(file, window)) {
+                    int i = 0;
+                    while (scanner.next()) {
+                        if (!expected[i].equals(scanner.token())
+                                || !expected[i].equals(scanner.tokenAt(scanner.offset()))) {
+                            throw new IllegalStateException("window " + window + " token " + i);
+                        }
+                        i++;
+                    }
+                    if (i != expected.length || scanner.next()) {
+                        throw new IllegalStateException("window " + window + " count " + i);
+                    }
+                }
+            }
+            for (int cut = 0; cut <= text.length(); cut++) {
+                int i = 0;
+                for (long[] range : new long[][] {{0, cut}, {cut, Long.MAX_VALUE}}) {
+                    try (TokenScanner scanner = new TokenScanner(file, range[0], range[1], 4)) {
+                        while (scanner.next()) {
+                            if (!expected[i++].equals(scanner.token())) {
+                                throw new IllegalStateException("cut " + cut + " token " + (i - 1));
+                            }
+                        }
+                    }
+                }
+                if (i != expected.length) {
+                    throw new IllegalStateException("cut " + cut + " count " + i);
+                }
+            }
+            Files.write(file, new byte[0]);
+            try (TokenScanner scanner = new TokenScanner(file)) {
+                if (scanner.next()) {
+                    throw new IllegalStateException("empty file");
+                }
+            }
+            StdOut.println("Sanity checks passed: " + Arrays.toString(expected));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
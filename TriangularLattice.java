@@ -0,0 +1,70 @@
+package week1;
+
+/**
+ * Triangular lattice (6 neighbours), drawn on a square grid as the 4 sides plus the
+ * up-right and down-left diagonals.
+ * Sites are numbered row by row, row 0 is the top and row n-1 the bottom.
+ */
+public class TriangularLattice implements Lattice {
+
+    /**
+     * Size of the lattice.
+     */
+    private final int n;
+
+    /**
+     * Create an n-by-n lattice
+     * @param n lattice size
+     */
+    public TriangularLattice(int n) {
+        if (n <= 0 || (long) n * n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException();
+        this.n = n;
+    }
+
+    @Override
+    public int sites() {
+        return n * n;
+    }
+
+    @Override
+    public int maxDegree() {
+        return 6;
+    }
+
+    @Override
+    public int neighbours(int site, int[] out) {
+        int row = site / n;
+        int col = site - row * n;
+        int count = 0;
+        if (row > 0) {
+            out[count++] = site - n;
+            if (col < n - 1) {
+                out[count++] = site - n + 1;
+            }
+        }
+        if (row < n - 1) {
+            out[count++] = site + n;
+            if (col > 0) {
+                out[count++] = site + n - 1;
+            }
+        }
+        if (col > 0) {
+            out[count++] = site - 1;
+        }
+        if (col < n - 1) {
+            out[count++] = site + 1;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isTop(int site) {
+        return site < n;
+    }
+
+    @Override
+    public boolean isBottom(int site) {
+        return site >= (n - 1) * n;
+    }
+}
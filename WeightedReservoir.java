@@ -0,0 +1,313 @@
+package week2;
+
+import common.RandomSource;
+import common.SplitMix64;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Weighted random sample of k items without replacement (Efraimidis-Spirakis A-Res): every
+ * item gets the key ln(u) / weight, u uniform in (0, 1], and the k largest keys are kept in
+ * a min-heap, grown by doubling up to k. With equal weights this is a uniform k-subset. Keys drawn by independent
+ * streams are comparable, so reservoirs filled in parallel over parts of the input merge into
+ * a sample of the whole input by keeping the k largest keys of the union.
+ * Callers with expensive items can draw key(weight) first and build the item only when
+ * accepts(key) holds.
+ *
+ * No parameters required to run from command line (Unit Testing only)
+ */
+public class WeightedReservoir<Item> implements Iterable<Item> {
+
+    /**
+     * Sample size.
+     */
+    private final int k;
+
+    /**
+     * Initial capacity of the heap, grown by doubling up to k.
+     */
+    private static final int MIN_CAPACITY = 8;
+
+    /**
+     * Min-heap of the kept keys, the smallest (next to be evicted) at position 0.
+     */
+    private double[] keys;
+
+    /**
+     * Kept items, at the same heap positions as their keys.
+     */
+    private Object[] items;
+
+    /**
+     * Random stream owned by this reservoir.
+     */
+    private final RandomSource random;
+
+    /**
+     * Number of kept items.
+     */
+    private int size;
+
+    /**
+     * Construct an empty reservoir, with a stream split from the calling thread's one.
+     * @param k sample size, not negative
+     */
+    public WeightedReservoir(int k) {
+        this(k, SplitMix64.current().split());
+    }
+
+    /**
+     * Construct an empty reservoir drawing from the given random stream.
+     * @param k sample size, not negative
+     * @param random random stream, owned by the reservoir from now on
+     */
+    public WeightedReservoir(int k, RandomSource random) {
+        if (k < 0 || random == null) {
+            throw new IllegalArgumentException();
+        }
+        this.k = k;
+        this.keys = new double[Math.min(k, MIN_CAPACITY)];
+        this.items = new Object[keys.length];
+        this.random = random;
+    }
+
+    /**
+     * Draw the key of an item with the given weight.
+     * @param weight weight of the item, positive and finite
+     * @return key, not positive
+     */
+    public double key(double weight) {
+        if (!(weight > 0) || weight == Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("Weight must be positive and finite: " + weight);
+        }
+        return Math.log(1.0 - random.nextDouble()) / weight;
+    }
+
+    /**
+     * Would an item with the given key be kept?
+     * @param key key drawn by key(weight)
+     * @return boolean evaluation
+     */
+    public boolean accepts(double key) {
+        return size < k || (k > 0 && key > keys[0]);
+    }
+
+    /**
+     * Keep the item if its key is among the k largest so far.
+     * @param item item, not null
+     * @param key key drawn by key(weight)
+     */
+    public void add(Item item, double key) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        if (!accepts(key)) {
+            return;
+        }
+        if (size < k) {
+            if (size == keys.length) {
+                int capacity = (int) Math.min(k, 2L * keys.length);
+                keys = Arrays.copyOf(keys, capacity);
+                items = Arrays.copyOf(items, capacity);
+            }
+            keys[size] = key;
+            items[size] = item;
+            siftUp(size++);
+        } else {
+            keys[0] = key;
+            items[0] = item;
+            siftDown(keys, items, 0, size);
+        }
+    }
+
+    /**
+     * Offer an item with the given weight.
+     * @param item item, not null
+     * @param weight weight of the item, positive and finite
+     */
+    public void offer(Item item, double weight) {
+        add(item, key(weight));
+    }
+
+    /**
+     * Offer an item with weight 1.
+     * @param item item, not null
+     */
+    public void offer(Item item) {
+        add(item, key(1.0));
+    }
+
+    /**
+     * Add the sample of another reservoir, filled from a disjoint part of the input with an
+     * independent stream; afterwards this reservoir samples both parts.
+     * @param other reservoir to merge, left unchanged
+     */
+    @SuppressWarnings("unchecked")
+    public void merge(WeightedReservoir<Item> other) {
+        if (other == null) {
+            throw new IllegalArgumentException();
+        }
+        for (int i = 0; i < other.size; i++) {
+            add((Item) other.items[i], other.keys[i]);
+        }
+    }
+
+    /**
+     * Number of kept items, min(k, items offered).
+     * @return sample size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Iterator over the sample from the largest key to the smallest (for a weighted sample,
+     * the order in which successive weighted draws without replacement would pick them).
+     * @return iterator
+     */
+    @Override
+    public Iterator<Item> iterator() {
+        double[] sortedKeys = new double[size];
+        Object[] sortedItems = new Object[size];
+        System.arraycopy(keys, 0, sortedKeys, 0, size);
+        System.arraycopy(items, 0, sortedItems, 0, size);
+        // heapsort the copy of the min-heap: each smallest key goes to the back
+        for (int end = size - 1; end > 0; end--) {
+            swap(sortedKeys, sortedItems, 0, end);
+            siftDown(sortedKeys, sortedItems, 0, end);
+        }
+        return new Iterator<Item>() {
+
+            /**
+             * Position of the next element
+             */
+            private int current = 0;
+
+            /**
+             * Checks if the Iterable has a next element.
+             * @return boolean evaluation
+             */
+            @Override
+            public boolean hasNext() {
+                return current < sortedItems.length;
+            }
+
+            /**
+             * Next element of the iterable
+             * @return element
+             */
+            @Override
+            @SuppressWarnings("unchecked")
+            public Item next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (Item) sortedItems[current++];
+            }
+        };
+    }
+
+    /**
+     * Move the entry at position i up to its place in the heap.
+     * @param i heap position
+     */
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (keys[parent] <= keys[i]) {
+                return;
+            }
+            swap(keys, items, i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Move the entry at position i down to its place in a min-heap.
+     * @param keys heap keys
+     * @param items heap items
+     * @param i heap position
+     * @param n heap size
+     */
+    private static void siftDown(double[] keys, Object[] items, int i, int n) {
+        while (2 * i + 1 < n) {
+            int child = 2 * i + 1;
+            if (child + 1 < n && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (keys[i] <= keys[child]) {
+                return;
+            }
+            swap(keys, items, i, child);
+            i = child;
+        }
+    }
+
+    /**
+     * Swap two heap entries.
+     * @param keys heap keys
+     * @param items heap items
+     * @param i heap position
+     * @param j heap position
+     */
+    private static void swap(double[] keys, Object[] items, int i, int j) {
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        Object item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+    }
+
+    /**
+     * unit testing (required).
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        int n = 8;
+        int k = 2;
+        int trials = 200_000;
+        int[] uniform = new int[n];
+        int[] weighted = new int[n];
+        int[] firstPick = new int[n];
+        for (int t = 0; t < trials; t++) {
+            SplitMix64 random = new SplitMix64(t);
+            // two halves sampled by independent reservoirs, then merged
+            WeightedReservoir<Integer> left = new WeightedReservoir<>(k, random.split());
+            WeightedReservoir<Integer> right = new WeightedReservoir<>(k, random.split());
+            for (int i = 0; i < n; i++) {
+                (i < n / 2 ? left : right).offer(i);
+            }
+            left.merge(right);
+            for (int item : left) {
+                uniform[item]++;
+            }
+
+            WeightedReservoir<Integer> byWeight = new WeightedReservoir<>(k, random.split());
+            for (int i = 0; i < n; i++) {
+                byWeight.offer(i, i + 1);
+            }
+            boolean first = true;
+            for (int item : byWeight) {
+                weighted[item]++;
+                if (first) {
+                    firstPick[item]++;
+                    first = false;
+                }
+            }
+        }
+        StdOut.println("Merged uniform inclusion (expected " + (double) k / n + ")");
+        for (int i = 0; i < n; i++) {
+            StdOut.println(String.format(Locale.ROOT, "%d %.4f", i, (double) uniform[i] / trials));
+        }
+        StdOut.println("Weight i+1: first pick frequency (expected (i+1)/36) and inclusion");
+        for (int i = 0; i < n; i++) {
+            StdOut.println(String.format(Locale.ROOT, "%d %.4f %.4f %.4f", i, (double) firstPick[i] / trials,
+                    (i + 1) / 36.0, (double) weighted[i] / trials));
+        }
+    }
+}
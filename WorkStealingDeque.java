@@ -0,0 +1,193 @@
+package week2;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chase-Lev work-stealing deque. One owner thread pushes and pops at the bottom without
+ * any atomic read-modify-write (pop only CASes when it races for the last item), while any
+ * number of thieves steal from the top with a single CAS on top. Indexes are 64-bit and only
+ * grow, so they never wrap and CAS on top can not suffer from ABA. The buffer is a circular
+ * array doubled by the owner when full; thieves that read the old buffer still find the item
+ * they CAS for, as growing copies without clearing.
+ *
+ * Slots are cleared when the owner pops; a stolen slot is left as is (the owner may already
+ * be reusing it), so at most one buffer worth of stolen items stays reachable until overwritten.
+ *
+ * To execute: java week2.WorkStealingDeque (stress test of owner against thieves)
+ */
+public class WorkStealingDeque<Item> {
+
+    /**
+     * Initial capacity of the buffer, a power of two.
+     */
+    private static final int MIN_CAPACITY = 32;
+
+    /**
+     * CAS access to top.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<WorkStealingDeque> TOP =
+            AtomicLongFieldUpdater.newUpdater(WorkStealingDeque.class, "top");
+
+    /**
+     * Index of the oldest item, where thieves steal.
+     */
+    private volatile long top;
+
+    /**
+     * Index after the newest item, where the owner pushes and pops.
+     */
+    private volatile long bottom;
+
+    /**
+     * Circular buffer holding the items, its length is always a power of two.
+     */
+    private volatile Object[] items = new Object[MIN_CAPACITY];
+
+    /**
+     * Add the item at the bottom. Owner thread only.
+     * @param item item to be added
+     */
+    public void push(Item item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        long b = bottom;
+        long t = top;
+        Object[] a = items;
+        if (b - t > a.length - 1) {
+            a = grow(a, t, b);
+        }
+        a[(int) b & (a.length - 1)] = item;
+        bottom = b + 1;
+    }
+
+    /**
+     * Remove and return the newest item. Owner thread only.
+     * @return removed item or null when empty (or when a thief took the last item)
+     */
+    @SuppressWarnings("unchecked")
+    public Item pop() {
+        long b = bottom - 1;
+        Object[] a = items;
+        bottom = b;
+        long t = top;
+        if (t > b) {
+            bottom = b + 1;
+            return null;
+        }
+        int slot = (int) b & (a.length - 1);
+        Item item = (Item) a[slot];
+        if (t == b) {
+            if (!TOP.compareAndSet(this, t, t + 1)) {
+                item = null;
+            }
+            bottom = b + 1;
+        }
+        a[slot] = null;
+        return item;
+    }
+
+    /**
+     * Remove and return the oldest item. Any thread.
+     * @return removed item or null when empty or when another thread won the race for it
+     */
+    @SuppressWarnings("unchecked")
+    public Item steal() {
+        long t = top;
+        long b = bottom;
+        if (t >= b) {
+            return null;
+        }
+        Object[] a = items;
+        Item item = (Item) a[(int) t & (a.length - 1)];
+        if (item == null || !TOP.compareAndSet(this, t, t + 1)) {
+            return null;
+        }
+        return item;
+    }
+
+    /**
+     * Is the deque empty? A snapshot, it may change right after.
+     * @return boolean evaluation
+     */
+    public boolean isEmpty() {
+        return bottom <= top;
+    }
+
+    /**
+     * Return the number of items, a snapshot that may change right after.
+     * @return size of the deque
+     */
+    public int size() {
+        long size = bottom - top;
+        return size < 0 ? 0 : (int) size;
+    }
+
+    /**
+     * Double the buffer, copying the items [t, b). Owner thread only.
+     * @param a current buffer
+     * @param t top index read by the owner
+     * @param b bottom index
+     * @return the new buffer
+     */
+    private Object[] grow(Object[] a, long t, long b) {
+        Object[] resized = new Object[a.length * 2];
+        for (long i = t; i < b; i++) {
+            resized[(int) i & (resized.length - 1)] = a[(int) i & (a.length - 1)];
+        }
+        items = resized;
+        return resized;
+    }
+
+    /**
+     * Owner pushes distinct values and pops some, thieves steal until all values were taken;
+     * every value must be taken exactly once.
+     * @param args not required
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int total = 2000000;
+        int thieves = 3;
+        WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+        AtomicIntegerArray taken = new AtomicIntegerArray(total);
+        LongAdder count = new LongAdder();
+        CountDownLatch done = new CountDownLatch(thieves);
+
+        for (int i = 0; i < thieves; i++) {
+            new Thread(() -> {
+                while (count.sum() < total) {
+                    Integer item = deque.steal();
+                    if (item != null) {
+                        taken.incrementAndGet(item);
+                        count.increment();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+
+        for (int i = 0; i < total; i++) {
+            deque.push(i);
+            if (i % 3 == 0) {
+                Integer item = deque.pop();
+                if (item != null) {
+                    taken.incrementAndGet(item);
+                    count.increment();
+                }
+            }
+        }
+        done.await();
+
+        for (int i = 0; i < total; i++) {
+            if (taken.get(i) != 1) {
+                throw new IllegalStateException("value " + i + " taken " + taken.get(i) + " times");
+            }
+        }
+        System.out.println("Stress test with " + thieves + " thieves: ok, size " + deque.size());
+    }
+}
@@ -0,0 +1,358 @@
+package week2;
+
+import common.SplitMix64;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Small fork-join executor built on week2.WorkStealingDeque: every worker owns a deque,
+ * fork() pushes on the current worker's deque, idle workers pop their own work first and
+ * then steal from a random victim. join() never blocks a worker, it runs other tasks while
+ * waiting. Tasks submitted from outside go through a shared injection queue.
+ *
+ * To execute: java week2.WorkStealingPool [threads [n]]
+ * Compares a recursive Fibonacci of n against java.util.concurrent.ForkJoinPool.
+ */
+public class WorkStealingPool {
+
+    /**
+     * Pause of a worker that found no task anywhere, in nanoseconds
+     */
+    private static final long IDLE_PARK_NANOS = 50000;
+
+    /**
+     * Workers of the pool
+     */
+    private final Worker[] workers;
+
+    /**
+     * Tasks submitted by threads outside the pool
+     */
+    private final ConcurrentLinkedQueue<Task<?>> submissions = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Set by shutdown, workers exit once they see it
+     */
+    private volatile boolean shutdown = false;
+
+    /**
+     * Unit of work that can fork subtasks and join them, like java.util.concurrent.RecursiveTask
+     * @param <V> result type
+     */
+    public abstract static class Task<V> {
+
+        /**
+         * Result, published by the volatile write of done
+         */
+        private V result;
+
+        /**
+         * Set once compute() returned
+         */
+        private volatile boolean done = false;
+
+        /**
+         * Failure thrown by compute(), rethrown by join()
+         */
+        private Throwable failure;
+
+        /**
+         * Set when a thread outside the pool waits on this task
+         */
+        private volatile boolean awaited = false;
+
+        /**
+         * The work of the task
+         * @return result of the task
+         */
+        protected abstract V compute();
+
+        /**
+         * Schedule the task on the current worker's deque. Worker threads only.
+         * @return this task
+         */
+        public final Task<V> fork() {
+            Thread thread = Thread.currentThread();
+            if (!(thread instanceof Worker)) {
+                throw new IllegalStateException("fork() called outside a WorkStealingPool");
+            }
+            ((Worker) thread).deque.push(this);
+            return this;
+        }
+
+        /**
+         * Wait for the task, running other tasks meanwhile. Worker threads only.
+         * @return result of the task
+         */
+        public final V join() {
+            Thread thread = Thread.currentThread();
+            if (!(thread instanceof Worker)) {
+                throw new IllegalStateException("join() called outside a WorkStealingPool");
+            }
+            Worker worker = (Worker) thread;
+            while (!done) {
+                Task<?> task = worker.findTask();
+                if (task != null) {
+                    task.run();
+                } else {
+                    Thread.yield();
+                }
+            }
+            return result();
+        }
+
+        /**
+         * Run compute() and publish its outcome. Called once, by the thread that took the task.
+         */
+        private void run() {
+            try {
+                result = compute();
+            } catch (Throwable e) {
+                // Errors too (StackOverflowError from deeply nested helping joins, assertions):
+                // waiters must be released, and the worker thread must survive
+                failure = e;
+            }
+            done = true;
+            if (awaited) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Result of a completed task
+         * @return result, or the failure of compute() rethrown
+         */
+        private V result() {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (failure != null) {
+                throw new IllegalStateException(failure);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Worker thread owning one deque
+     */
+    private final class Worker extends Thread {
+
+        /**
+         * Tasks forked by this worker
+         */
+        private final WorkStealingDeque<Task<?>> deque = new WorkStealingDeque<>();
+
+        /**
+         * Picks the victims of this worker
+         */
+        private final SplitMix64 random;
+
+        Worker(int index, long seed) {
+            super("work-stealing-worker-" + index);
+            setDaemon(true);
+            random = new SplitMix64(seed);
+        }
+
+        /**
+         * Next task to run: own deque first, then submissions, then a random victim
+         * @return task or null if none was found
+         */
+        private Task<?> findTask() {
+            Task<?> task = deque.pop();
+            if (task != null) {
+                return task;
+            }
+            task = submissions.poll();
+            if (task != null) {
+                return task;
+            }
+            int start = random.nextInt(workers.length);
+            for (int i = 0; i < workers.length; i++) {
+                Worker victim = workers[(start + i) % workers.length];
+                if (victim != this) {
+                    task = victim.deque.steal();
+                    if (task != null) {
+                        return task;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void run() {
+            while (!shutdown) {
+                Task<?> task = findTask();
+                if (task != null) {
+                    task.run();
+                } else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start a pool
+     * @param parallelism number of worker threads
+     */
+    public WorkStealingPool(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException();
+        }
+        workers = new Worker[parallelism];
+        long seed = SplitMix64.current().nextLong();
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = new Worker(i, SplitMix64.mix64(seed + i));
+        }
+        for (Worker worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Run a task on the pool and wait for its result. Threads outside the pool only.
+     * @param task root task
+     * @param <V> result type
+     * @return result of the task
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public <V> V invoke(Task<V> task) throws InterruptedException {
+        if (Thread.currentThread() instanceof Worker) {
+            throw new IllegalStateException("use fork/join inside the pool");
+        }
+        task.awaited = true;
+        submissions.add(task);
+        synchronized (task) {
+            while (!task.done) {
+                task.wait();
+            }
+        }
+        return task.result();
+    }
+
+    /**
+     * Stop the workers once they finish their current task
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    /**
+     * Recursive Fibonacci on this pool
+     */
+    private static class Fibonacci extends Task<Long> {
+
+        /**
+         * Index of the Fibonacci number
+         */
+        private final int n;
+
+        Fibonacci(int n) {
+            this.n = n;
+        }
+
+        @Override
+        protected Long compute() {
+            if (n < 20) {
+                return sequential(n);
+            }
+            Fibonacci left = new Fibonacci(n - 1);
+            left.fork();
+            long right = new Fibonacci(n - 2).compute();
+            return left.join() + right;
+        }
+    }
+
+    /**
+     * Same recursive Fibonacci on java.util.concurrent.ForkJoinPool
+     */
+    private static class ForkJoinFibonacci extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Index of the Fibonacci number
+         */
+        private final int n;
+
+        ForkJoinFibonacci(int n) {
+            this.n = n;
+        }
+
+        @Override
+        protected Long compute() {
+            if (n < 20) {
+                return sequential(n);
+            }
+            ForkJoinFibonacci left = new ForkJoinFibonacci(n - 1);
+            left.fork();
+            long right = new ForkJoinFibonacci(n - 2).compute();
+            return left.join() + right;
+        }
+    }
+
+    /**
+     * Sequential leaf of both benchmarks
+     * @param n index of the Fibonacci number
+     * @return Fibonacci number
+     */
+    private static long sequential(int n) {
+        return n < 2 ? n : sequential(n - 1) + sequential(n - 2);
+    }
+
+    /**
+     * Time Fibonacci on both pools
+     * @param args arg1 (optional): threads, default all processors, arg2 (optional): n, default 36
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 36;
+
+        WorkStealingPool pool = new WorkStealingPool(threads);
+        ForkJoinPool forkJoinPool = new ForkJoinPool(threads);
+        try {
+            try {
+                pool.invoke(new Task<Long>() {
+                    @Override
+                    protected Long compute() {
+                        throw new AssertionError("expected");
+                    }
+                });
+                throw new IllegalStateException("Error thrown by compute() was lost");
+            } catch (AssertionError e) {
+                System.out.println("Error from compute() rethrown: " + e.getMessage());
+            }
+
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                long result = pool.invoke(new Fibonacci(n));
+                long ours = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                long expected = forkJoinPool.invoke(new ForkJoinFibonacci(n));
+                long theirs = System.nanoTime() - start;
+
+                if (result != expected) {
+                    throw new IllegalStateException(result + " != " + expected);
+                }
+                System.out.printf("fib(%d) = %d  WorkStealingPool %d ms  ForkJoinPool %d ms%n",
+                        n, result, ours / 1000000, theirs / 1000000);
+            }
+        } finally {
+            pool.shutdown();
+            forkJoinPool.shutdown();
+        }
+    }
+}